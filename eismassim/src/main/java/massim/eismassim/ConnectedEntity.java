@@ -6,13 +6,16 @@ import eis.exceptions.PerceiveException;
 import eis.iilang.Action;
 import eis.iilang.Percept;
 import massim.protocol.messages.*;
+import massim.protocol.util.FrameInputStream;
+import massim.protocol.util.WireCodec;
+import massim.protocol.util.WireFormat;
 import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.*;
+import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.net.UnknownHostException;
-import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
@@ -23,12 +26,16 @@ import java.util.concurrent.TimeUnit;
 public abstract class ConnectedEntity extends Entity {
 
     private static EnvironmentInterface EI;
+    static final int CONNECT_TIMEOUT = 3000; // ms
 
     // config for all entities
     private static int timeout; // timeout for performing actions (if scheduling is enabled)
     private static boolean scheduling = false; // send only one action per action-id?
     private static boolean notifications = false; // send percepts as notifications?
     private static boolean throwExceptions = false; // throw exceptions? (some agent platforms don't like that)
+    private static WireFormat protocol = WireFormat.JSON; // wire format to request from the server
+    private static boolean compression = false; // request compression from the server?
+    private static boolean perceptDeltas = false; // request percept deltas from the server?
 
     // config for this entity
     private final String username;
@@ -38,23 +45,27 @@ public abstract class ConnectedEntity extends Entity {
     private boolean useJSON = false;
     private boolean useIILang = false;
 
-    private boolean connected = false;
-    private boolean connecting = false;
+    private volatile boolean connected = false;
+    private volatile boolean connecting = false;
     private Socket socket;
     private InputStream in;
     private OutputStream out;
+    private WireCodec codec = new WireCodec(WireFormat.JSON, false); // currently used on the socket
+    private MultiplexedConnection multiplexedConnection; // used instead of an own socket (if set)
 
-    private final Set<Percept> simStartPercepts = new HashSet<>();
-    private final Set<Percept> previousSimStartPercepts = new HashSet<>();
-    private final Set<Percept> requestActionPercepts = new HashSet<>();
-    private final Set<Percept> previousRequestActionPercepts = new HashSet<>();
-    private final Set<Percept> simEndPercepts = new HashSet<>();
-    private final Set<Percept> previousSimEndPercepts = new HashSet<>();
-    private final Set<Percept> byePercepts = new HashSet<>();
-    private final Set<Percept> previousByePercepts = new HashSet<>();
+    private final List<Percept> simStartPercepts = new ArrayList<>();
+    private final List<Percept> requestActionPercepts = new ArrayList<>();
+    private final List<Percept> simEndPercepts = new ArrayList<>();
+    private final List<Percept> byePercepts = new ArrayList<>();
+    private final PerceptTracker simStartTracker = new PerceptTracker();
+    private final PerceptTracker requestActionTracker = new PerceptTracker();
+    private final PerceptTracker simEndTracker = new PerceptTracker();
+    private final PerceptTracker byeTracker = new PerceptTracker();
+
+    private RequestActionMessage lastRequestAction; // last complete request-action message (to apply deltas to)
 
     private long lastUsedActionId;
-    protected long currentActionId;
+    protected long currentActionId; // guarded by this
     private long lastActionIdPerceivedFor;
 
     private final LinkedBlockingQueue<Message> inbox = new LinkedBlockingQueue<>();
@@ -130,6 +141,44 @@ public abstract class ConnectedEntity extends Entity {
         throwExceptions = true;
     }
 
+    /**
+     * Sets the wire format to request from the server for all entities (JSON if the server does not support it).
+     * @param format the format to request
+     */
+    static void setProtocol(WireFormat format) {
+        protocol = format;
+    }
+
+    /**
+     * Enables compression for all entities (if the server supports it).
+     */
+    static void enableCompression() {
+        compression = true;
+    }
+
+    /**
+     * Enables percept deltas for all entities (if the server supports them).
+     */
+    static void enablePerceptDeltas() {
+        perceptDeltas = true;
+    }
+
+    /**
+     * Lets the entity use the given connection (shared with other entities) instead of an own socket.
+     * @param connection the connection to use
+     */
+    void setMultiplexedConnection(MultiplexedConnection connection) {
+        multiplexedConnection = connection;
+    }
+
+    String getUsername() {
+        return username;
+    }
+
+    String getPassword() {
+        return password;
+    }
+
     /**
      * Enables json output for percepts.
      */
@@ -147,28 +196,52 @@ public abstract class ConnectedEntity extends Entity {
     @Override
     public void run() {
 
+        // both threads only serve the connection they were started for
+        var connection = socket;
+        var processor = Thread.currentThread();
         new Thread(() -> {
-            while (connected) {
+            while (isConnectedVia(connection)) {
                 try {
                     var json = receiveMessage();
-                    var msg = Message.buildFromJson(json);
+                    var msg = completeMessage(Message.buildFromJson(json));
                     if (msg != null)
                         inbox.add(msg);
                 } catch (IOException e) {
-                    e.printStackTrace();
-                    releaseConnection();
+                    if (isConnectedVia(connection)) e.printStackTrace();
+                    releaseConnection(connection);
                     break;
                 }
             }
+            processor.interrupt();
         }).start();
 
-        while (connected) {
+        while (isConnectedVia(connection)) {
             try {
                 updatePercepts(inbox.take());
             } catch (InterruptedException ignored) {}
         }
     }
 
+    private boolean isConnectedVia(Socket connection) {
+        return connected && socket == connection;
+    }
+
+    /**
+     * Applies percept deltas to the previous request-action message.
+     * @return the complete message or null if it cannot be completed
+     */
+    private Message completeMessage(Message msg) {
+        if (msg instanceof RequestActionMessage rac) {
+            if (!rac.applyDelta(lastRequestAction)) {
+                log("cannot apply percept delta without previous percept");
+                return null;
+            }
+            lastRequestAction = rac;
+        }
+        else if (msg != null) lastRequestAction = null; // server sends a complete percept next
+        return msg;
+    }
+
     private synchronized void updatePercepts(Message msg) {
         if (msg == null) return;
 
@@ -185,6 +258,7 @@ public abstract class ConnectedEntity extends Entity {
             requestActionPercepts.addAll(requestActionToIIL(rac));
 
             currentActionId = rac.getId();
+            notifyAll(); // wake up threads waiting for a new action id
 
             if (notifications) EI.sendNotifications(this.getName(), requestActionPercepts);
         }
@@ -204,7 +278,7 @@ public abstract class ConnectedEntity extends Entity {
             byePercepts.add(new Percept("bye"));
 
             if (notifications) EI.sendNotifications(this.getName(), byePercepts);
-            this.releaseConnection();
+            if (multiplexedConnection == null) this.releaseConnection(socket); // shared connections are closed by the server
         }
         else {
             log("unexpected type " + msg.getMessageType());
@@ -228,51 +302,53 @@ public abstract class ConnectedEntity extends Entity {
     public PerceptUpdate getPercepts() throws PerceiveException{
         if (scheduling) {
             // block if already perceived for the same action ID
-            long startTime = System.currentTimeMillis();
-            while (currentActionId <= lastActionIdPerceivedFor || currentActionId == -1 ) {
-                try {
-                    TimeUnit.MILLISECONDS.sleep(50);
-                } catch (InterruptedException ignored) {}
-                if (timeout > 0 && System.currentTimeMillis() - startTime >= timeout) {
-                    if (throwExceptions)
-                        throw new PerceiveException("timeout. no valid action-id available in time");
-                    else {
-                        return new PerceptUpdate();
-                    }
+            var actionId = awaitNewActionId(lastActionIdPerceivedFor);
+            if (actionId == -1) {
+                if (throwExceptions)
+                    throw new PerceiveException("timeout. no valid action-id available in time");
+                else {
+                    return new PerceptUpdate();
                 }
             }
-            lastActionIdPerceivedFor = currentActionId;
+            lastActionIdPerceivedFor = actionId;
         }
 
         return takePercepts();
     }
 
+    /**
+     * Blocks until an action id newer than the given one has been received or the configured timeout is reached.
+     * Waiting threads are woken up as soon as a new request-action message has been processed.
+     * @param lastId the last action id that was already used
+     * @return the new action id or -1 if none became available in time
+     */
+    private synchronized long awaitNewActionId(long lastId) {
+        var deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        while (currentActionId <= lastId || currentActionId == -1) {
+            try {
+                if (timeout <= 0)
+                    wait();
+                else {
+                    var remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) return -1;
+                    TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                }
+            } catch (InterruptedException ignored) {}
+        }
+        return currentActionId;
+    }
+
     private synchronized PerceptUpdate takePercepts() {
-        var ret = takePercepts(previousSimStartPercepts, simStartPercepts);
-        ret.merge(takePercepts(previousRequestActionPercepts, requestActionPercepts));
-        ret.merge(takePercepts(previousSimEndPercepts, simEndPercepts));
-        ret.merge(takePercepts(previousByePercepts, byePercepts));
+        var ret = simStartTracker.update(simStartPercepts);
+        ret.merge(requestActionTracker.update(requestActionPercepts));
+        ret.merge(simEndTracker.update(simEndPercepts));
+        ret.merge(byeTracker.update(byePercepts));
 
         if (useIILang) log(ret.toString());
 
         return ret;
     }
 
-    private static PerceptUpdate takePercepts(Set<Percept> previousPercepts, Set<Percept> currentPercepts) {
-        var res = createPerceptUpdate(previousPercepts, currentPercepts);
-        previousPercepts.clear();
-        previousPercepts.addAll(currentPercepts);
-        return res;
-    }
-
-    private static PerceptUpdate createPerceptUpdate(Set<Percept> previousPercepts, Set<Percept> currentPercepts) {
-        var addList = new ArrayList<>(currentPercepts);
-        addList.removeAll(previousPercepts);
-        var delList = new ArrayList<>(previousPercepts);
-        delList.removeAll(currentPercepts);
-        return new PerceptUpdate(addList, delList);
-    }
-
     /**
      * Performs an action by transforming it to JSON and sending it to the massim server.
      * @param action the action to perform
@@ -287,50 +363,50 @@ public abstract class ConnectedEntity extends Entity {
         }
 
         // wait for a valid action id
-        long startTime = System.currentTimeMillis();
+        var actionId = currentActionId;
         if (scheduling) {
-            while (currentActionId <= lastUsedActionId || currentActionId == -1) {
-                try {
-                    TimeUnit.MILLISECONDS.timedWait(this, 50);
-                } catch (InterruptedException ignored) {}
-                if (timeout > 0 && System.currentTimeMillis() - startTime >= timeout) {
-                    if (throwExceptions)
-                        throw new ActException(ActException.FAILURE, "timeout. no valid action-id available in time");
-                    else
-                        return;
-                }
+            actionId = awaitNewActionId(lastUsedActionId);
+            if (actionId == -1) {
+                if (throwExceptions)
+                    throw new ActException(ActException.FAILURE, "timeout. no valid action-id available in time");
+                else
+                    return;
             }
         }
 
-        JSONObject json = actionToJSON(currentActionId, action);
+        JSONObject json = actionToJSON(actionId, action);
         try {
             sendMessage(json);
-            lastUsedActionId = currentActionId;
+            lastUsedActionId = actionId;
         } catch (IOException e) {
-            releaseConnection();
+            if (multiplexedConnection == null) releaseConnection(socket);
             throw new ActException(ActException.FAILURE, "sending action failed", e);
         }
     }
 
     /**
      * Tries to connect to a MASSim server. Including authentication and all.
+     * @return whether the entity is connected afterwards
      */
-    void establishConnection() {
-        if (connecting) return;
+    boolean establishConnection() {
+        if (multiplexedConnection != null) return multiplexedConnection.connect(this);
+        if (connecting) return false;
         connecting = true;
         try {
-            socket = new Socket(host, port);
-            in = socket.getInputStream();
+            socket = new Socket();
+            socket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT);
+            in = new FrameInputStream(socket.getInputStream());
             out = socket.getOutputStream();
+            codec = new WireCodec(WireFormat.JSON, false);
+            lastRequestAction = null;
+            inbox.clear();
 
             log("socket successfully created");
 
             if (authenticate()) {
                 log("authentication acknowledged");
 
-                lastUsedActionId = -1;
-                currentActionId = -1;
-                lastActionIdPerceivedFor = -1;
+                resetActionIds();
                 connected = true;
                 log("connection successfully authenticated");
 
@@ -346,7 +422,19 @@ public abstract class ConnectedEntity extends Entity {
         } catch (IOException e) {
             log(e.getMessage());
         }
+        if (!connected && socket != null) {
+            try {
+                socket.close();
+            } catch (IOException ignored) {}
+        }
         connecting = false;
+        return connected;
+    }
+
+    private synchronized void resetActionIds() {
+        lastUsedActionId = -1;
+        currentActionId = -1;
+        lastActionIdPerceivedFor = -1;
     }
 
     /**
@@ -355,7 +443,7 @@ public abstract class ConnectedEntity extends Entity {
      */
     private boolean authenticate() {
 
-        Message authReq = new AuthRequestMessage(username, password);
+        Message authReq = makeAuthRequest(null, false);
         try {
             sendMessage(authReq.toJson());
         } catch (IOException e) {
@@ -374,27 +462,81 @@ public abstract class ConnectedEntity extends Entity {
         Message responseMsg = Message.buildFromJson(jsonResponse);
 
         if (responseMsg instanceof AuthResponseMessage authResponse) {
-            return authResponse.getResult().equals(AuthResponseMessage.OK);
+            var newCodec = negotiateCodec(authResponse);
+            if (newCodec == null) return false;
+            codec = newCodec;
+            return true;
         }
         return false;
     }
 
     /**
-     * Tries to close the current socket if it exists.
-     * Then sleeps for a second.
+     * @param multiplex usernames and passwords of further entities to authenticate (null if not multiplexed)
+     * @param batch whether to request batches for the multiplexed connection
+     * @return an auth-request for this entity with everything configured to request from the server
      */
-    private void releaseConnection() {
-        if (socket != null){
-            try {
-                socket.close();
-            }
-            catch(IOException ignored) {}
-        }
+    AuthRequestMessage makeAuthRequest(Map<String, String> multiplex, boolean batch) {
+        return new AuthRequestMessage(username, password,
+                protocol != WireFormat.JSON? protocol.getName() : null, compression? WireCodec.DEFLATE : null,
+                perceptDeltas, multiplex, batch);
+    }
+
+    /**
+     * @return the codec to use after the authentication or null if the authentication failed
+     */
+    WireCodec negotiateCodec(AuthResponseMessage authResponse) {
+        if (!authResponse.getResult().equals(AuthResponseMessage.OK)) return null;
+        var format = WireFormat.fromName(authResponse.getProtocol());
+        if (format == null) format = WireFormat.JSON;
+        if (format != protocol) log("server does not support protocol " + protocol.getName() + ", using " + format.getName());
+        var compressed = WireCodec.DEFLATE.equals(authResponse.getCompression());
+        if (compression && !compressed) log("server does not support compression");
+        if (perceptDeltas && !authResponse.isDeltas()) log("server does not send percept deltas");
+        return new WireCodec(format, compressed);
+    }
+
+    /**
+     * Called by the multiplexed connection when the entity has been authenticated on it.
+     */
+    void handleMultiplexedConnection() {
+        lastRequestAction = null;
+        resetActionIds();
+        connected = true;
+        log("connection successfully authenticated");
+    }
+
+    /**
+     * Called by the multiplexed connection for each message it received for this entity.
+     * @param json the received message
+     */
+    void handleMultiplexedMessage(JSONObject json) {
+        if (useJSON) log(json.toString(3) + "\treceived");
+        updatePercepts(completeMessage(Message.buildFromJson(json)));
+    }
+
+    /**
+     * Called by the multiplexed connection when it has been closed.
+     */
+    void handleMultiplexedConnectionLost() {
+        connected = false;
+        log("connection released");
+        if (EI != null) EI.connectionLost(this);
+    }
+
+    /**
+     * Tries to close the socket if it is still the current one.
+     * Then asks the EI to reconnect the entity.
+     * @param connection the socket to release
+     */
+    private synchronized void releaseConnection(Socket connection) {
+        if (!isConnectedVia(connection)) return; // already released
         try {
-            TimeUnit.MILLISECONDS.sleep(1000);
-        } catch (InterruptedException ignored) {}
+            connection.close();
+        }
+        catch(IOException ignored) {}
         connected = false;
         log("connection released");
+        if (EI != null) EI.connectionLost(this);
     }
 
     /**
@@ -411,10 +553,8 @@ public abstract class ConnectedEntity extends Entity {
      * @throws IOException if the document could not be sent
      */
     private void sendMessage(JSONObject json) throws IOException {
-        OutputStreamWriter osw = new OutputStreamWriter(out, StandardCharsets.UTF_8);
-        osw.write(json.toString());
-        osw.write(0);
-        osw.flush();
+        if (multiplexedConnection != null) multiplexedConnection.send(this, json);
+        else codec.write(out, json);
         if (useJSON) log(json.toString(3) + "\tsent");
     }
 
@@ -424,19 +564,12 @@ public abstract class ConnectedEntity extends Entity {
      * @throws IOException if no message could be received
      */
     private JSONObject receiveMessage() throws IOException {
-        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-        int read;
-        while ((read = in.read()) != 0) {
-            if (read == -1) throw new IOException();
-            buffer.write(read);
-        }
-        String message = buffer.toString(StandardCharsets.UTF_8);
         try {
-            JSONObject json = new JSONObject(message);
+            JSONObject json = codec.read(in, Integer.MAX_VALUE);
             if (useJSON) log(json.toString(3) + "\treceived");
             return json;
         } catch(JSONException e){
-            log("Invalid object: " + message);
+            log("Invalid object: " + e.getMessage());
         }
         return null;
     }
@@ -8,6 +8,7 @@ import massim.eismassim.entities.ScenarioEntity;
 import massim.eismassim.entities.StatusEntity;
 import massim.protocol.messages.StatusResponseMessage;
 import massim.protocol.messages.scenario.Actions;
+import massim.protocol.util.WireFormat;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
@@ -17,7 +18,6 @@ import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.text.ParseException;
 import java.util.*;
-import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -26,11 +26,13 @@ import java.util.concurrent.TimeUnit;
 public class EnvironmentInterface extends EIDefaultImpl implements Runnable{
     @Serial
     private static final long serialVersionUID = 1L;
+    private static final int RECONNECT_THREADS = 8; // maximum number of parallel connection attempts
     private final Set<String> supportedActions = new HashSet<>();
     private final Map<String, Entity> entities = new HashMap<>();
 
     private String configFile = "eismassimconfig.json";
     private boolean throwExceptions = false;
+    private transient ReconnectScheduler reconnects;
 
     /**
      * Constructor.
@@ -88,6 +90,12 @@ public class EnvironmentInterface extends EIDefaultImpl implements Runnable{
         new Thread(this).start();
     }
 
+    @Override
+    public void kill() throws ManagementException {
+        super.kill();
+        if (reconnects != null) reconnects.shutdown();
+    }
+
     @Override
     protected PerceptUpdate getPerceptsForEntity(String name) throws PerceiveException, NoEnvironmentException {
         var e = entities.get(name);
@@ -158,6 +166,22 @@ public class EnvironmentInterface extends EIDefaultImpl implements Runnable{
         ConnectedEntity.setTimeout(timeout);
         Log.log("Timeout set to " + timeout);
 
+        var protocol = config.optString("protocol", WireFormat.JSON.getName());
+        var format = WireFormat.fromName(protocol);
+        if (format == null) throw new ParseException("Unknown protocol " + protocol, 0);
+        ConnectedEntity.setProtocol(format);
+        Log.log("Protocol set to " + format.getName());
+
+        if(config.optBoolean("compression", false)){
+            ConnectedEntity.enableCompression();
+            Log.log("Compression enabled.");
+        }
+
+        if(config.optBoolean("deltas", false)){
+            ConnectedEntity.enablePerceptDeltas();
+            Log.log("Percept deltas enabled.");
+        }
+
         this.throwExceptions = config.optBoolean("exceptions", false);
         if (this.throwExceptions) ConnectedEntity.enableExceptions();
         Log.flog("Act/PerceiveExceptions %s\n", throwExceptions? "enabled" : "disabled");
@@ -205,6 +229,8 @@ public class EnvironmentInterface extends EIDefaultImpl implements Runnable{
             var startIndex = multiEntity.getInt("start-index");
             var printIILang = multiEntity.optBoolean("print-iilang", true);
             var printJSON = multiEntity.optBoolean("print-json", true);
+            var multiplexed = multiEntity.optBoolean("multiplex", false);
+            var batched = multiEntity.optBoolean("batch", false);
 
             if (count == -1) {
                 Log.log("EISMASSim auto config found. Querying server for number of entities.");
@@ -213,10 +239,13 @@ public class EnvironmentInterface extends EIDefaultImpl implements Runnable{
 
             int endIndex = startIndex + count - 1;
             Log.log("Creating " + count + " new EISMASSim entities " + namePrefix + startIndex + " to " + namePrefix + endIndex);
+            var connection = multiplexed? new MultiplexedConnection(host, port, batched) : null;
+            if (multiplexed) Log.log("Entities share one connection.");
             for (int index = startIndex; index <= endIndex; index++) {
                 ConnectedEntity entity = new ScenarioEntity(namePrefix + index, host, port, usernamePrefix + index, password);
                 if (printIILang) entity.enableIILang();
                 if (printJSON) entity.enableJSON();
+                if (connection != null) connection.add(entity);
                 if(entities.put(entity.getName(), entity) != null){
                     Log.log("Entity by name " + entity.getName() + " configured multiple times. Previous one replaced.");
                 }
@@ -257,22 +286,28 @@ public class EnvironmentInterface extends EIDefaultImpl implements Runnable{
 
         entities.values().stream().filter(e -> e instanceof StatusEntity).forEach(e -> ((StatusEntity)e).start());
 
-        while (this.getState() != EnvironmentState.KILLED) {
-
-            // check connections and attempt to reconnect if necessary
-            for ( Entity e : entities.values()) {
-                if (e instanceof ConnectedEntity && ((ConnectedEntity) e).isNotConnected()) {
-                    Log.log("entity \"" + e.getName() + "\" is not connected. trying to connect.");
-                    Executors.newSingleThreadExecutor().execute(((ConnectedEntity)e)::establishConnection);
-                }
-            }
-
-            try {
-                TimeUnit.MILLISECONDS.sleep(1000);
-            } catch (InterruptedException ignored) {} // be nice to the server and our CPU
+        // connect all entities (reconnects are scheduled when a connection is lost)
+        var connectedEntities = entities.values().stream()
+                .filter(e -> e instanceof ConnectedEntity)
+                .map(e -> (ConnectedEntity) e)
+                .toList();
+        reconnects = new ReconnectScheduler(Math.min(connectedEntities.size(), RECONNECT_THREADS));
+        for (var entity : connectedEntities) {
+            Log.log("entity \"" + entity.getName() + "\" is not connected. trying to connect.");
+            reconnects.schedule(entity);
         }
     }
 
+    /**
+     * Schedules a new connection attempt for an entity that lost its connection.
+     * @param entity the entity to reconnect
+     */
+    void connectionLost(ConnectedEntity entity) {
+        if (reconnects == null || getState() == EnvironmentState.KILLED) return;
+        Log.log("entity \"" + entity.getName() + "\" is not connected. trying to connect.");
+        reconnects.schedule(entity);
+    }
+
     /**
      * Sends notifications to an agent for a collection of percepts
      * @param name the name of the entity
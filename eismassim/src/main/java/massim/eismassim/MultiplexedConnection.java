@@ -0,0 +1,275 @@
+package massim.eismassim;
+
+import massim.protocol.messages.AuthResponseMessage;
+import massim.protocol.messages.BatchMessage;
+import massim.protocol.messages.Message;
+import massim.protocol.util.FrameInputStream;
+import massim.protocol.util.WireCodec;
+import massim.protocol.util.WireFormat;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One connection to the MASSim server shared by multiple entities of the same team.
+ * The first entity authenticates as usual and names all others in its auth-request. Afterwards,
+ * each message is tagged with the name of the agent it belongs to.
+ * There is only one thread (for receiving) per connection, which also processes the messages for all entities.
+ * If batches are negotiated, the server sends the request-action messages of all entities in one batch.
+ * The actions in response are then held back until all entities of the batch have acted (or half of the time
+ * until the deadline has passed), and sent in one batch as well.
+ */
+class MultiplexedConnection {
+
+    private static final ScheduledExecutorService flushes = Executors.newSingleThreadScheduledExecutor(r -> {
+        var thread = new Thread(r, "eismassim-batch");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final String host;
+    private final int port;
+    private final boolean batchRequested;
+    private final List<ConnectedEntity> entities = new ArrayList<>();
+    private final Map<String, ConnectedEntity> entitiesByUsername = new HashMap<>();
+
+    private volatile boolean connected = false;
+    private boolean multiplexed = false; // false if the server does not support it
+    private boolean batched = false;
+    private Socket socket;
+    private InputStream in;
+    private OutputStream out;
+    private WireCodec codec;
+
+    // the current batch (guarded by this)
+    private final Set<String> awaitingActions = new HashSet<>();
+    private final List<JSONObject> heldActions = new ArrayList<>();
+    private long batchCounter = 0;
+
+    /**
+     * @param batch whether to request batches from the server
+     */
+    MultiplexedConnection(String host, int port, boolean batch) {
+        this.host = host;
+        this.port = port;
+        this.batchRequested = batch;
+    }
+
+    /**
+     * Lets the entity use this connection.
+     */
+    void add(ConnectedEntity entity) {
+        entities.add(entity);
+        entitiesByUsername.put(entity.getUsername(), entity);
+        entity.setMultiplexedConnection(this);
+    }
+
+    /**
+     * Connects and authenticates all entities if the connection is not established yet.
+     * @param requester the entity that needs the connection
+     * @return whether the requesting entity is connected afterwards
+     */
+    boolean connect(ConnectedEntity requester) {
+        List<ConnectedEntity> authenticated;
+        Socket connection;
+        synchronized (this) {
+            if (!entities.contains(requester)) return false; // detached meanwhile, connects on its own next time
+            if (connected) return !requester.isNotConnected();
+            authenticated = open();
+            if (authenticated.isEmpty()) return false;
+            // before releasing the lock, so that the other entities find themselves connected
+            authenticated.forEach(ConnectedEntity::handleMultiplexedConnection);
+            connection = socket;
+        }
+        new Thread(() -> receive(connection)).start();
+        return !requester.isNotConnected();
+    }
+
+    /**
+     * Opens a new socket and authenticates the entities.
+     * @return all entities that were authenticated
+     */
+    private List<ConnectedEntity> open() {
+        var lead = entities.get(0);
+        var authenticated = new ArrayList<ConnectedEntity>();
+        try {
+            socket = new Socket();
+            socket.connect(new InetSocketAddress(host, port), ConnectedEntity.CONNECT_TIMEOUT);
+            in = new FrameInputStream(socket.getInputStream());
+            out = socket.getOutputStream();
+
+            var multiplex = new LinkedHashMap<String, String>();
+            entities.stream().skip(1).forEach(e -> multiplex.put(e.getUsername(), e.getPassword()));
+            WireFormat.JSON.write(out, lead.makeAuthRequest(multiplex, batchRequested).toJson());
+            var response = Message.buildFromJson(WireFormat.JSON.read(in, Integer.MAX_VALUE));
+            if (response instanceof AuthResponseMessage authResponse
+                    && (codec = lead.negotiateCodec(authResponse)) != null) {
+                authenticated.add(lead);
+                multiplexed = authResponse.getMultiplex() != null;
+                batched = multiplexed && authResponse.isBatch();
+                if (batchRequested && !batched) Log.log("server does not support batches");
+                var others = new ArrayList<>(entities.subList(1, entities.size()));
+                if (multiplexed) {
+                    var accepted = new HashSet<>(authResponse.getMultiplex());
+                    for (var entity : others) {
+                        if (accepted.contains(entity.getUsername())) authenticated.add(entity);
+                        else Log.log("Entity " + entity.getName() + ": authentication denied, using an own connection");
+                    }
+                }
+                else Log.log("server does not support multiplexing, other entities use their own connections");
+                // entities that are not part of this connection authenticate on their own when they reconnect
+                others.stream().filter(e -> !authenticated.contains(e)).forEach(this::detach);
+                connected = true;
+            }
+            else if (response instanceof AuthResponseMessage) {
+                // the next entity leads the following attempt
+                Log.log("Entity " + lead.getName() + ": authentication denied, using an own connection");
+                detach(lead);
+            }
+            else Log.log("Entity " + lead.getName() + ": no valid authentication response");
+        } catch (IOException | JSONException e) {
+            Log.log("multiplexed connection failed: " + e.getMessage());
+        }
+        if (!connected) {
+            try {
+                socket.close();
+            } catch (IOException ignored) {}
+        }
+        return authenticated;
+    }
+
+    /**
+     * Removes the entity from this connection, so that it uses its own connection from now on.
+     */
+    private void detach(ConnectedEntity entity) {
+        entity.setMultiplexedConnection(null);
+        entities.remove(entity);
+        entitiesByUsername.remove(entity.getUsername());
+    }
+
+    /**
+     * Receives messages and hands them to the entities they are tagged with until the connection is lost.
+     * @param connection the socket to read from
+     */
+    private void receive(Socket connection) {
+        while (connected && socket == connection) {
+            try {
+                var json = codec.read(in, Integer.MAX_VALUE);
+                if (batched && Message.buildFromJson(json) instanceof BatchMessage batch) {
+                    startBatch(batch.getMessages());
+                    batch.getMessages().forEach(this::dispatch);
+                }
+                else dispatch(json);
+            } catch (JSONException e) {
+                Log.log("Invalid object: " + e.getMessage());
+            } catch (IOException e) {
+                release(connection);
+                break;
+            }
+        }
+    }
+
+    /**
+     * Hands a received message to the entity it is tagged with.
+     */
+    private void dispatch(JSONObject json) {
+        var entity = multiplexed? entitiesByUsername.get(json.optString(Message.KEY_AGENT)) : entities.get(0);
+        if (entity != null) entity.handleMultiplexedMessage(json);
+        else Log.log("received message for unknown agent " + json.opt(Message.KEY_AGENT));
+    }
+
+    /**
+     * Remembers which entities have to answer the request-action messages of a new batch (sending any actions
+     * still held back from the previous one) and schedules the latest time to send the answers.
+     * @param messages the messages of the batch
+     */
+    private synchronized void startBatch(List<JSONObject> messages) {
+        flush(batchCounter);
+        var batchId = ++batchCounter;
+        var timeout = Long.MAX_VALUE;
+        for (var message : messages) {
+            if (!Message.TYPE_REQUEST_ACTION.equals(message.optString("type"))) continue;
+            awaitingActions.add(message.optString(Message.KEY_AGENT));
+            var content = message.optJSONObject("content");
+            if (content != null) timeout = Math.min(timeout, content.optLong("deadline") - content.optLong("time"));
+        }
+        if (awaitingActions.isEmpty()) return;
+        flushes.schedule(() -> flush(batchId), Math.max(0, timeout / 2), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Sends all actions held back for the batch (if it is still the current one).
+     * Actions of entities that did not answer until now are sent on their own later.
+     * @param batchId the number of the batch to flush
+     */
+    private synchronized void flush(long batchId) {
+        if (batchId != batchCounter) return;
+        awaitingActions.clear();
+        if (heldActions.isEmpty()) return;
+        try {
+            write(heldActions.size() == 1? heldActions.get(0) : new BatchMessage(List.copyOf(heldActions)).toJson());
+        } catch (IOException ignored) { // connection is released
+        }
+        heldActions.clear();
+    }
+
+    /**
+     * Sends a message for an entity. Actions answering the current batch may be held back to be sent together.
+     * @throws IOException if the message could not be sent (the connection is released then)
+     */
+    synchronized void send(ConnectedEntity entity, JSONObject json) throws IOException {
+        if (!connected) throw new IOException("not connected");
+        if (multiplexed) json.put(Message.KEY_AGENT, entity.getUsername());
+        if (Message.TYPE_ACTION.equals(json.optString("type")) && awaitingActions.remove(entity.getUsername())) {
+            heldActions.add(json);
+            if (awaitingActions.isEmpty()) flush(batchCounter);
+            return;
+        }
+        write(json);
+    }
+
+    private synchronized void write(JSONObject json) throws IOException {
+        try {
+            codec.write(out, json);
+        } catch (IOException e) {
+            release(socket);
+            throw e;
+        }
+    }
+
+    /**
+     * Closes the socket if it is still the current one and notifies all entities.
+     * @param connection the socket to release
+     */
+    private void release(Socket connection) {
+        List<ConnectedEntity> affected;
+        synchronized (this) {
+            if (!connected || socket != connection) return; // already released
+            connected = false;
+            batchCounter++;
+            awaitingActions.clear();
+            heldActions.clear();
+            try {
+                connection.close();
+            } catch (IOException ignored) {}
+            affected = List.copyOf(entities);
+        }
+        Log.log("multiplexed connection released");
+        affected.forEach(ConnectedEntity::handleMultiplexedConnectionLost);
+    }
+}
@@ -0,0 +1,83 @@
+package massim.eismassim;
+
+import eis.PerceptUpdate;
+import eis.iilang.Function;
+import eis.iilang.Identifier;
+import eis.iilang.Numeral;
+import eis.iilang.Parameter;
+import eis.iilang.ParameterList;
+import eis.iilang.Percept;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+
+/**
+ * Remembers the percepts of one kind (e.g. those of request-action messages) that were last handed out,
+ * to create percept updates containing only the differences.
+ * <p>
+ * Each percept is hashed only once per update (from its complete structure, so percepts which only differ in their
+ * parameters do not collide) and the maps are reused between updates.
+ */
+class PerceptTracker {
+
+    private HashMap<Key, Percept> previous = new HashMap<>();
+    private HashMap<Key, Percept> current = new HashMap<>();
+
+    /**
+     * @param percepts the current percepts (may contain duplicates)
+     * @return the percepts added and deleted since the last call
+     */
+    PerceptUpdate update(Collection<Percept> percepts) {
+        var added = new ArrayList<Percept>();
+        for (var percept : percepts) {
+            var key = new Key(percept);
+            if (current.putIfAbsent(key, percept) == null && previous.remove(key) == null)
+                added.add(percept);
+        }
+        var deleted = new ArrayList<>(previous.values()); // everything that was not perceived again
+        previous.clear();
+        var tmp = previous;
+        previous = current;
+        current = tmp;
+        return new PerceptUpdate(added, deleted);
+    }
+
+    private static int hash(Parameter parameter) {
+        if (parameter instanceof Identifier id) return id.getValue().hashCode();
+        if (parameter instanceof Numeral n) return Double.hashCode(n.getValue().doubleValue());
+        if (parameter instanceof Function f) return 31 * f.getName().hashCode() + hashAll(f.getParameters());
+        if (parameter instanceof ParameterList list) return hashAll(list);
+        return parameter.hashCode();
+    }
+
+    private static int hashAll(Iterable<Parameter> parameters) {
+        var result = 1;
+        for (var parameter : parameters) result = 31 * result + hash(parameter);
+        return result;
+    }
+
+    /**
+     * A percept with its hash code computed once.
+     */
+    private static final class Key {
+
+        private final Percept percept;
+        private final int hash;
+
+        Key(Percept percept) {
+            this.percept = percept;
+            this.hash = 31 * percept.getName().hashCode() + hashAll(percept.getParameters());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key other && other.hash == hash && other.percept.equals(percept);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package massim.eismassim;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Schedules connection attempts for entities on a small shared thread pool.
+ * Failed attempts are retried with exponential backoff and jitter per entity, so that a restarting server
+ * is not hammered with connection attempts, while all entities still reconnect quickly once it is back.
+ */
+class ReconnectScheduler {
+
+    static final long INITIAL_DELAY = 250; // ms
+    static final long MAX_DELAY = 3000; // ms
+
+    private final ScheduledThreadPoolExecutor executor;
+    private final Map<ConnectedEntity, Integer> failures = new ConcurrentHashMap<>();
+    private final Set<ConnectedEntity> pending = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param threads the maximum number of connection attempts to run at the same time
+     */
+    ReconnectScheduler(int threads) {
+        executor = new ScheduledThreadPoolExecutor(Math.max(1, threads), r -> {
+            var thread = new Thread(r, "eismassim-reconnect");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Schedules a connection attempt for the entity, unless one is already pending.
+     * The first attempt after a successful connection is made immediately.
+     * @param entity the entity to connect
+     */
+    void schedule(ConnectedEntity entity) {
+        var failed = failures.getOrDefault(entity, 0);
+        schedule(entity, failed == 0? 0 : delay(failed));
+    }
+
+    private void schedule(ConnectedEntity entity, long delay) {
+        if (executor.isShutdown() || !pending.add(entity)) return;
+        executor.schedule(() -> attempt(entity), delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void attempt(ConnectedEntity entity) {
+        pending.remove(entity);
+        if (!entity.isNotConnected()) { // connected meanwhile (e.g. through a shared connection)
+            failures.remove(entity);
+            return;
+        }
+        if (entity.establishConnection()) {
+            failures.remove(entity);
+            return;
+        }
+        var failed = failures.merge(entity, 1, Integer::sum);
+        var delay = delay(failed);
+        Log.log("entity \"" + entity.getName() + "\" could not connect. next attempt in " + delay + " ms.");
+        schedule(entity, delay);
+    }
+
+    /**
+     * @param failed the number of consecutive failed attempts (at least 1)
+     * @return a random delay (ms) between half and all of the exponential backoff for the given number of failures
+     */
+    static long delay(int failed) {
+        var backoff = INITIAL_DELAY << Math.min(failed - 1, 16);
+        backoff = Math.min(backoff, MAX_DELAY);
+        return backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+    }
+
+    /**
+     * @return the number of consecutive failed attempts of the entity
+     */
+    int getFailures(ConnectedEntity entity) {
+        return failures.getOrDefault(entity, 0);
+    }
+
+    /**
+     * Cancels all pending connection attempts.
+     */
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
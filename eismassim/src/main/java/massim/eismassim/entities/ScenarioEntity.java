@@ -59,7 +59,7 @@ public class ScenarioEntity extends ConnectedEntity {
 
     @Override
     protected Collection<Percept> requestActionToIIL(RequestActionMessage message) {
-        var ret = new HashSet<Percept>();
+        var ret = new ArrayList<Percept>(); // duplicates are removed when creating the percept update
         if(!(message instanceof StepPercept percept)) return ret; // percept incompatible with entity
 
         ret.add(new Percept("actionID", num(percept.getId())));
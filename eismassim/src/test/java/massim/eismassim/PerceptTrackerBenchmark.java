@@ -0,0 +1,92 @@
+package massim.eismassim;
+
+import eis.PerceptUpdate;
+import eis.iilang.Identifier;
+import eis.iilang.Numeral;
+import eis.iilang.Percept;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Compares the time needed to create percept updates with the {@link PerceptTracker} against the previous approach
+ * (copying both percept sets to lists and using removeAll).
+ * Simulates a number of entities, each perceiving a few hundred percepts per step of which some change.
+ * <p>
+ * Run with: <code>java massim.eismassim.PerceptTrackerBenchmark [entities] [percepts] [steps]</code>
+ */
+public class PerceptTrackerBenchmark {
+
+    public static void main(String[] args) {
+        var entities = args.length > 0? Integer.parseInt(args[0]) : 50;
+        var percepts = args.length > 1? Integer.parseInt(args[1]) : 300;
+        var steps = args.length > 2? Integer.parseInt(args[2]) : 750;
+
+        var perceptsPerStep = createSteps(percepts, steps);
+        for (var round = 0; round < 3; round++) { // the first rounds are warm-up
+            var start = System.nanoTime();
+            var changes = 0L;
+            for (var entity = 0; entity < entities; entity++) {
+                var previous = new HashSet<Percept>();
+                for (var step : perceptsPerStep) {
+                    var update = createPerceptUpdate(previous, step);
+                    changes += update.getAddList().size() + update.getDeleteList().size();
+                    previous.clear();
+                    previous.addAll(step);
+                }
+            }
+            var removeAllTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            var trackerChanges = 0L;
+            for (var entity = 0; entity < entities; entity++) {
+                var tracker = new PerceptTracker();
+                for (var step : perceptsPerStep) {
+                    var update = tracker.update(step);
+                    trackerChanges += update.getAddList().size() + update.getDeleteList().size();
+                }
+            }
+            var trackerTime = System.nanoTime() - start;
+
+            if (changes != trackerChanges) throw new IllegalStateException("results differ");
+            System.out.printf("round %d: removeAll %d ms, tracker %d ms (%d changes)%n",
+                    round, removeAllTime / 1_000_000, trackerTime / 1_000_000, changes);
+        }
+    }
+
+    /**
+     * @return percepts for each step: things around the entity, some of which change each step
+     */
+    private static List<Set<Percept>> createSteps(int percepts, int steps) {
+        var random = new Random(17);
+        var result = new ArrayList<Set<Percept>>();
+        var current = new HashSet<Percept>();
+        while (current.size() < percepts) current.add(randomThing(random));
+        for (var step = 0; step < steps; step++) {
+            var next = new HashSet<>(current);
+            next.removeIf(p -> random.nextInt(10) == 0);
+            while (next.size() < percepts) next.add(randomThing(random));
+            next.add(new Percept("step", new Numeral(step)));
+            result.add(next);
+            current = next;
+            current.removeIf(p -> p.getName().equals("step"));
+        }
+        return result;
+    }
+
+    private static Percept randomThing(Random random) {
+        return new Percept("thing", new Numeral(random.nextInt(11) - 5), new Numeral(random.nextInt(11) - 5),
+                new Identifier(random.nextBoolean()? "obstacle" : "block"), new Identifier("b" + random.nextInt(3)));
+    }
+
+    private static PerceptUpdate createPerceptUpdate(Set<Percept> previousPercepts, Set<Percept> currentPercepts) {
+        var addList = new ArrayList<>(currentPercepts);
+        addList.removeAll(previousPercepts);
+        var delList = new ArrayList<>(previousPercepts);
+        delList.removeAll(currentPercepts);
+        return new PerceptUpdate(addList, delList);
+    }
+}
@@ -0,0 +1,53 @@
+package massim.eismassim;
+
+import eis.iilang.Function;
+import eis.iilang.Identifier;
+import eis.iilang.Numeral;
+import eis.iilang.ParameterList;
+import eis.iilang.Percept;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+public class PerceptTrackerTest {
+
+    private static Percept thing(int x, int y, String type) {
+        return new Percept("thing", new Numeral(x), new Numeral(y), new Identifier(type), new Identifier(""));
+    }
+
+    @org.junit.Test
+    public void updatesContainDifferences() {
+        var tracker = new PerceptTracker();
+        var first = List.of(thing(0, 1, "obstacle"), thing(1, 0, "block"), new Percept("step", new Numeral(1)));
+        var update = tracker.update(first);
+        assert new HashSet<>(update.getAddList()).equals(new HashSet<>(first));
+        assert update.getDeleteList().isEmpty();
+
+        var second = List.of(thing(0, 1, "obstacle"), thing(1, 0, "block"), new Percept("step", new Numeral(2)),
+                new Percept("step", new Numeral(2)));
+        update = tracker.update(second);
+        assert update.getAddList().equals(List.of(new Percept("step", new Numeral(2))));
+        assert update.getDeleteList().equals(List.of(new Percept("step", new Numeral(1))));
+
+        update = tracker.update(second);
+        assert update.getAddList().isEmpty() && update.getDeleteList().isEmpty();
+
+        update = tracker.update(List.of());
+        assert update.getAddList().isEmpty();
+        assert new HashSet<>(update.getDeleteList()).equals(new HashSet<>(second));
+    }
+
+    @org.junit.Test
+    public void nestedParametersAreCompared() {
+        var tracker = new PerceptTracker();
+        var task = new Percept("task", new Identifier("t0"), new ParameterList(
+                new Function("req", new Numeral(0), new Numeral(1), new Identifier("b0"))));
+        var otherTask = new Percept("task", new Identifier("t0"), new ParameterList(
+                new Function("req", new Numeral(0), new Numeral(1), new Identifier("b1"))));
+        tracker.update(List.of(task));
+        var update = tracker.update(new ArrayList<>(List.of(otherTask)));
+        assert update.getAddList().equals(List.of(otherTask));
+        assert update.getDeleteList().equals(List.of(task));
+    }
+}
@@ -0,0 +1,132 @@
+package massim.eismassim;
+
+import eis.iilang.Action;
+import eis.iilang.Percept;
+import massim.protocol.messages.RequestActionMessage;
+import massim.protocol.messages.SimEndMessage;
+import massim.protocol.messages.SimStartMessage;
+import org.json.JSONObject;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+public class ReconnectSchedulerTest {
+
+    /**
+     * An entity that fails to connect a given number of times before it succeeds.
+     */
+    private static class StubEntity extends ConnectedEntity {
+
+        private final AtomicInteger attempts = new AtomicInteger();
+        private volatile int failuresLeft;
+        private volatile boolean connected = false;
+
+        private StubEntity(int failures) {
+            super("stub", "localhost", 0, "stub", "");
+            this.failuresLeft = failures;
+        }
+
+        @Override
+        boolean isNotConnected() {
+            attempts.incrementAndGet(); // only called once per attempt
+            return !connected;
+        }
+
+        @Override
+        boolean establishConnection() {
+            if (failuresLeft > 0) {
+                failuresLeft--;
+                return false;
+            }
+            connected = true;
+            return true;
+        }
+
+        @Override
+        protected List<Percept> simStartToIIL(SimStartMessage startPercept) {
+            return List.of();
+        }
+
+        @Override
+        protected Collection<Percept> requestActionToIIL(RequestActionMessage message) {
+            return List.of();
+        }
+
+        @Override
+        protected Collection<Percept> simEndToIIL(SimEndMessage endPercept) {
+            return List.of();
+        }
+
+        @Override
+        protected JSONObject actionToJSON(long id, Action action) {
+            return new JSONObject();
+        }
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        var deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assert System.currentTimeMillis() < deadline;
+            Thread.sleep(10);
+        }
+    }
+
+    @org.junit.Test
+    public void delaysGrowUpToTheMaximum() {
+        for (var i = 0; i < 100; i++) {
+            var first = ReconnectScheduler.delay(1);
+            assert first >= ReconnectScheduler.INITIAL_DELAY / 2 && first <= ReconnectScheduler.INITIAL_DELAY;
+            var third = ReconnectScheduler.delay(3);
+            assert third >= 2 * ReconnectScheduler.INITIAL_DELAY && third <= 4 * ReconnectScheduler.INITIAL_DELAY;
+            var late = ReconnectScheduler.delay(1000);
+            assert late >= ReconnectScheduler.MAX_DELAY / 2 && late <= ReconnectScheduler.MAX_DELAY;
+        }
+    }
+
+    @org.junit.Test
+    public void entitiesHaveOnePendingAttempt() throws InterruptedException {
+        var scheduler = new ReconnectScheduler(4);
+        var entity = new StubEntity(1);
+        scheduler.schedule(entity);
+        await(() -> scheduler.getFailures(entity) == 1); // the retry is pending now
+        for (var i = 0; i < 3; i++) scheduler.schedule(entity);
+        await(() -> entity.connected);
+        Thread.sleep(2 * ReconnectScheduler.INITIAL_DELAY); // let any duplicate attempt run
+        assert entity.attempts.get() == 2;
+        scheduler.shutdown();
+    }
+
+    @org.junit.Test
+    public void successResetsFailures() throws InterruptedException {
+        var scheduler = new ReconnectScheduler(1);
+        var entity = new StubEntity(2);
+        scheduler.schedule(entity);
+        await(() -> entity.connected);
+        assert entity.attempts.get() == 3;
+        assert scheduler.getFailures(entity) == 0;
+
+        // connected by someone else (like a shared connection) before the retry
+        var other = new StubEntity(Integer.MAX_VALUE);
+        scheduler.schedule(other);
+        await(() -> scheduler.getFailures(other) == 1);
+        other.connected = true;
+        await(() -> scheduler.getFailures(other) == 0);
+        scheduler.shutdown();
+    }
+
+    @org.junit.Test
+    public void shutdownCancelsPendingAttempts() throws InterruptedException {
+        var scheduler = new ReconnectScheduler(1);
+        var entity = new StubEntity(Integer.MAX_VALUE);
+        scheduler.schedule(entity);
+        await(() -> scheduler.getFailures(entity) == 1);
+        scheduler.shutdown();
+        Thread.sleep(2 * ReconnectScheduler.INITIAL_DELAY); // the retry would have run by now
+        assert entity.attempts.get() == 1;
+        scheduler.schedule(entity);
+        Thread.sleep(50);
+        assert entity.attempts.get() == 1;
+    }
+}
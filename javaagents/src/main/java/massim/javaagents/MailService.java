@@ -3,31 +3,39 @@ package massim.javaagents;
 import eis.iilang.Percept;
 import massim.javaagents.agents.Agent;
 
-import java.util.HashMap;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.logging.Logger;
 
 /**
  * A simple register for agents that forwards messages.
+ * Messages are queued and delivered to the receiving agent right before its next step,
+ * so that agents may send messages while being stepped in parallel.
+ * If an agent is not stepped for a long time, only its latest {@value #INBOX_CAPACITY} messages are kept.
  */
 public class MailService {
 
-    private Map<String, Agent> register = new HashMap<>();
-    private Map<String, List<Agent>> agentsByTeam = new HashMap<>();
-    private Map<String, String> teamForAgent = new HashMap<>();
+    private static final int INBOX_CAPACITY = 1000;
+
+    private final Map<String, List<Agent>> agentsByTeam = new ConcurrentHashMap<>();
+    private final Map<String, String> teamForAgent = new ConcurrentHashMap<>();
+    private final Map<String, ArrayDeque<Mail>> inboxes = new ConcurrentHashMap<>(); // each guarded by itself
     private Logger logger = Logger.getLogger("agents");
 
+    private record Mail(Percept message, String from) {}
+
     /**
      * Registers an agent with this mail service. The agent will now receive messages.
      * @param agent the agent to register
      * @param team the agent's team (needed for broadcasts)
      */
     void registerAgent(Agent agent, String team){
-        register.put(agent.getName(), agent);
-        agentsByTeam.putIfAbsent(team, new Vector<>());
-        agentsByTeam.get(team).add(agent);
+        inboxes.put(agent.getName(), new ArrayDeque<>());
+        agentsByTeam.computeIfAbsent(team, t -> new CopyOnWriteArrayList<>()).add(agent);
         teamForAgent.put(agent.getName(), team);
     }
 
@@ -39,13 +47,16 @@ public class MailService {
      */
     public void sendMessage(Percept message, String to, String from){
 
-        Agent recipient = register.get(to);
+        ArrayDeque<Mail> inbox = inboxes.get(to);
 
-        if(recipient == null) {
+        if(inbox == null) {
             logger.warning("Cannot deliver message to " + to + "; unknown target,");
         }
         else{
-            recipient.handleMessage(message, from);
+            synchronized (inbox) {
+                if (inbox.size() >= INBOX_CAPACITY) inbox.pollFirst(); // drop the oldest message
+                inbox.addLast(new Mail(message, from));
+            }
         }
     }
 
@@ -60,4 +71,19 @@ public class MailService {
                 .filter(ag -> !ag.equals(sender))
                 .forEach(ag -> sendMessage(message, ag, sender));
     }
-}
\ No newline at end of file
+
+    /**
+     * Hands all messages that were sent to the agent since the last call to the agent.
+     * @param agent the receiving agent
+     */
+    void deliverMessages(Agent agent) {
+        var inbox = inboxes.get(agent.getName());
+        if (inbox == null) return;
+        List<Mail> mails;
+        synchronized (inbox) {
+            mails = new ArrayList<>(inbox);
+            inbox.clear();
+        }
+        mails.forEach(mail -> agent.handleMessage(mail.message(), mail.from()));
+    }
+}
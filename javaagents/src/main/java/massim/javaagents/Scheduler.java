@@ -17,12 +17,17 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * A scheduler for agent creation and execution.
- * EISMASSim scheduling needs to be enabled (via config), so that getAllPercepts()
- * blocks until new percepts are available!
- * (Also, queued and notifications should be disabled)
+ * If EISMASSim notifications are enabled (via config), the scheduler is signalled as soon as new percepts
+ * are available for an agent. Otherwise, it falls back to polling the percepts of all agents.
+ * (Also, queued should be disabled)
  */
 public class Scheduler implements AgentListener, EnvironmentListener{
 
@@ -43,9 +48,18 @@ public class Scheduler implements AgentListener, EnvironmentListener{
         }
     }
 
+    /**
+     * Names of the percepts that EISMASSim adds first to each new set of percepts.
+     */
+    private static final Set<String> SIGNAL_PERCEPTS = Set.of("simStart", "requestAction", "simEnd", "bye");
+
     private EnvironmentInterface eis;
     private List<AgentConf> agentConfigurations = new Vector<>();
-    private Map<String, Agent> agents = new HashMap<>();
+    private Map<String, Agent> agents = new ConcurrentHashMap<>();
+    private final Set<Agent> readyAgents = new LinkedHashSet<>(); // agents with new percepts (guarded by itself)
+    private MailService mailService;
+    private ExecutorService executor; // steps agents in parallel (null if agents are stepped sequentially)
+    private boolean notifications = true; // whether EISMASSim signals new percepts (otherwise, all agents are polled)
 
     /**
      * Create a new scheduler based on the given configuration file
@@ -53,6 +67,22 @@ public class Scheduler implements AgentListener, EnvironmentListener{
      */
     Scheduler(String path) {
         parseConfig(path);
+        parseEISConfig(path);
+    }
+
+    /**
+     * Checks whether the EISMASSim config (in the same directory) enables notifications.
+     * @param path the path to the config directory
+     */
+    private void parseEISConfig(String path) {
+        try {
+            var config = new JSONObject(new String(Files.readAllBytes(Paths.get(path, "eismassimconfig.json"))));
+            notifications = config.optBoolean("notifications", true);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        if (!notifications)
+            System.out.println("EISMASSim notifications are disabled - polling the percepts of all agents instead.");
     }
 
     /**
@@ -79,18 +109,39 @@ public class Scheduler implements AgentListener, EnvironmentListener{
                     }
                 }
             }
+            if (config.optBoolean("parallel", false))
+                executor = createExecutor(config.optString("executor", "work-stealing"), config.optInt("threads", 0));
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
+    /**
+     * Creates the executor for stepping agents in parallel.
+     * @param type the type of executor ("work-stealing" or "virtual")
+     * @param threads the parallelism of the work-stealing pool (0 for the number of available processors)
+     * @return the new executor
+     */
+    private static ExecutorService createExecutor(String type, int threads) {
+        if (type.equals("virtual")) {
+            try { // virtual threads are only available with Java 21 or newer
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                System.out.println("Virtual threads not available - using a work-stealing pool instead.");
+            }
+        }
+        else if (!type.equals("work-stealing"))
+            System.out.println("Unknown executor " + type + " - using a work-stealing pool instead.");
+        return Executors.newWorkStealingPool(threads > 0? threads : Runtime.getRuntime().availableProcessors());
+    }
+
     /**
      * Connects to an Environment Interface
      * @param ei the interface to connect to
      */
     void setEnvironment(EnvironmentInterface ei) {
         this.eis = ei;
-        MailService mailService = new MailService();
+        mailService = new MailService();
         for (AgentConf agentConf: agentConfigurations) {
 
             Agent agent = null;
@@ -119,55 +170,134 @@ public class Scheduler implements AgentListener, EnvironmentListener{
                 e.printStackTrace();
             }
 
-            ei.attachAgentListener(agent.getName(), this);
             agents.put(agentConf.name, agent);
+            ei.attachAgentListener(agent.getName(), this);
         }
         ei.attachEnvironmentListener(this);
     }
 
     /**
-     * Steps all agents and relevant infrastructure.
+     * Waits until new percepts are available and steps exactly the agents which received them.
+     * Without notifications, all agents are checked for new percepts.
      */
     void step() {
-        // retrieve percepts for all agents
+        var ready = notifications? awaitReadyAgents() : new ArrayList<>(agents.values());
+        var executed = executor == null? stepSequentially(ready) : stepInParallel(ready);
+
+        if(!notifications && executed == 0) try {
+            Thread.sleep(100); // wait a bit in case no agents have been executed
+        } catch (InterruptedException ignored) {}
+    }
+
+    /**
+     * Blocks until at least one agent has been signalled to have new percepts or the environment stops running.
+     * @return all agents that have been signalled since the last call
+     */
+    private List<Agent> awaitReadyAgents() {
+        synchronized (readyAgents) {
+            while (readyAgents.isEmpty() && eis.getState() == EnvironmentState.RUNNING) {
+                try {
+                    readyAgents.wait();
+                } catch (InterruptedException ignored) {}
+            }
+            var ready = new ArrayList<>(readyAgents);
+            readyAgents.clear();
+            return ready;
+        }
+    }
+
+    /**
+     * Retrieves percepts for all given agents first and then steps all agents which have new percepts one after another.
+     * @return the number of agents that were stepped
+     */
+    private int stepSequentially(List<Agent> ready) {
         List<Agent> newPerceptAgents = new ArrayList<>();
-        agents.values().forEach(ag -> {
-            try {
-                var addList = new ArrayList<Percept>();
-                var delList = new ArrayList<Percept>();
-                eis.getPercepts(ag.getName()).values().forEach(pUpdate -> {
-                    addList.addAll(pUpdate.getAddList());
-                    delList.addAll(pUpdate.getDeleteList());
-                });
-                if (!addList.isEmpty() || !delList.isEmpty()) newPerceptAgents.add(ag);
-                ag.setPercepts(addList, delList);
-            } catch (PerceiveException ignored) { }
+        ready.forEach(ag -> {
+            if (updatePercepts(ag)) newPerceptAgents.add(ag);
         });
+        newPerceptAgents.forEach(this::stepAgent);
+        return newPerceptAgents.size();
+    }
 
-        // step all agents which have new percepts
-        newPerceptAgents.forEach(agent -> {
-            eis.iilang.Action action = agent.step();
-            if (action != null) {
+    /**
+     * Retrieves percepts and steps each given agent in its own task. Each action is performed as soon as its agent
+     * is finished, so that slow agents do not delay the others.
+     * @return the number of agents that were stepped
+     */
+    private int stepInParallel(List<Agent> ready) {
+        var tasks = new ArrayList<Callable<Boolean>>();
+        for (var agent : ready) {
+            tasks.add(() -> {
+                if (!updatePercepts(agent)) return false;
+                stepAgent(agent);
+                return true;
+            });
+        }
+        var executed = 0;
+        try {
+            for (var result : executor.invokeAll(tasks)) {
                 try {
-                    eis.performAction(agent.getName(), action);
-                } catch (ActException e) {
-                    System.out.println("Could not perform action " + action.getName() + " for " + agent.getName());
+                    if (result.get()) executed++;
+                } catch (ExecutionException e) {
+                    e.getCause().printStackTrace();
                 }
             }
-        });
-
-        if(newPerceptAgents.size() == 0) try {
-            Thread.sleep(100); // wait a bit in case no agents have been executed
         } catch (InterruptedException ignored) {}
+        return executed;
+    }
+
+    /**
+     * Retrieves the latest percepts of an agent.
+     * @return true if the agent has new percepts
+     */
+    private boolean updatePercepts(Agent ag) {
+        try {
+            var addList = new ArrayList<Percept>();
+            var delList = new ArrayList<Percept>();
+            eis.getPercepts(ag.getName()).values().forEach(pUpdate -> {
+                addList.addAll(pUpdate.getAddList());
+                delList.addAll(pUpdate.getDeleteList());
+            });
+            ag.setPercepts(addList, delList);
+            return !addList.isEmpty() || !delList.isEmpty();
+        } catch (PerceiveException ignored) {
+            return false;
+        }
+    }
+
+    /**
+     * Delivers the agent's messages, steps it and performs the resulting action.
+     */
+    private void stepAgent(Agent agent) {
+        mailService.deliverMessages(agent);
+        eis.iilang.Action action = agent.step();
+        if (action != null) {
+            try {
+                eis.performAction(agent.getName(), action);
+            } catch (ActException e) {
+                System.out.println("Could not perform action " + action.getName() + " for " + agent.getName());
+            }
+        }
     }
 
     @Override
     public void handlePercept(String agent, Percept percept) {
-        agents.get(agent).handlePercept(percept);
+        var ag = agents.get(agent);
+        if (ag == null) return;
+        ag.handlePercept(percept);
+        if (SIGNAL_PERCEPTS.contains(percept.getName())) {
+            synchronized (readyAgents) {
+                if (readyAgents.add(ag)) readyAgents.notifyAll();
+            }
+        }
     }
 
     @Override
-    public void handleStateChange(EnvironmentState newState) {}
+    public void handleStateChange(EnvironmentState newState) {
+        synchronized (readyAgents) {
+            readyAgents.notifyAll(); // let the main loop check whether it should still run
+        }
+    }
 
     @Override
     public void handleFreeEntity(String entity, Collection<String> agents) {}
@@ -64,7 +64,7 @@ public abstract class Agent {
     }
 
     /**
-     * Called if another agent sent a message to this agent; so technically this is part of another agent's step method.
+     * Called right before this agent's step for each message that another agent sent to this agent since its last step.
      *
      * @param message the message that was sent
      * @param sender name of the agent who sent the message
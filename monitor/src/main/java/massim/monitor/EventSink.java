@@ -3,59 +3,64 @@ package massim.monitor;
 import org.webbitserver.BaseWebSocketHandler;
 import org.webbitserver.WebSocketConnection;
 
-import java.util.HashSet;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
+/**
+ * Broadcasts messages to all connected websocket clients.
+ * Sending only hands the message to the client's (Netty) channel, which writes it asynchronously, so broadcasting
+ * does not wait for slow clients. Note that the channel buffers all messages a client has not received yet.
+ */
 public class EventSink extends BaseWebSocketHandler {
+
     private final String name;
-    private String latestStatic;
-    private String latestDynamic;
-    private final ReentrantReadWriteLock poolLock = new ReentrantReadWriteLock();
-    private final HashSet<WebSocketConnection> pool = new HashSet<WebSocketConnection>();
+    private String latestStatic; // guarded by this
+    private String latestDynamic; // guarded by this
+    private final List<WebSocketConnection> pool = new CopyOnWriteArrayList<>(); // modified while holding this
 
     public EventSink(String name) {
         this.name = name;
     }
 
+    /**
+     * @return whether any client is currently connected
+     */
+    public boolean hasClients() {
+        return !pool.isEmpty();
+    }
+
     @Override
-    public void onOpen(WebSocketConnection client) {
-        Lock lock = poolLock.writeLock();
-        lock.lock();
-        try {
-            pool.add(client);
-            if (latestStatic != null) client.send(latestStatic);
-            if (latestDynamic != null) client.send(latestDynamic);
-            System.out.println(String.format("[ MONITOR ] %s: %d connection(s)", name, pool.size()));
-        } finally {
-            lock.unlock();
-        }
+    public synchronized void onOpen(WebSocketConnection client) {
+        // send the latest messages before broadcasts can reach the client, so that they arrive in order
+        if (latestStatic != null) send(client, latestStatic);
+        if (latestDynamic != null) send(client, latestDynamic);
+        pool.add(client);
+        System.out.println(String.format("[ MONITOR ] %s: %d connection(s)", name, pool.size()));
     }
 
     @Override
-    public void onClose(WebSocketConnection client) {
-        Lock lock = poolLock.writeLock();
-        lock.lock();
-        try {
-            pool.remove(client);
-            System.out.println(String.format("[ MONITOR ] %s: %d connection(s)", name, pool.size()));
-        } finally {
-            lock.unlock();
-        }
+    public synchronized void onClose(WebSocketConnection client) {
+        pool.remove(client);
+        System.out.println(String.format("[ MONITOR ] %s: %d connection(s)", name, pool.size()));
     }
 
-    public void broadcast(String message, boolean dynamic) {
+    public synchronized void broadcast(String message, boolean dynamic) {
         if (dynamic) this.latestDynamic = message;
-        else this.latestStatic = message;
+        else {
+            this.latestStatic = message;
+            this.latestDynamic = null; // belongs to the previous static state
+        }
+
+        for (WebSocketConnection client: pool) {
+            send(client, message);
+        }
+    }
 
-        Lock lock = poolLock.readLock();
-        lock.lock();
+    private static void send(WebSocketConnection client, String message) {
         try {
-            for (WebSocketConnection client: pool) {
-                client.send(message);
-            }
-        } finally {
-            lock.unlock();
+            client.send(message);
+        } catch (RuntimeException e) {
+            System.out.println(String.format("[ MONITOR ] could not send to client: %s", e.getMessage()));
         }
     }
 }
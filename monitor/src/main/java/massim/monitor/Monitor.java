@@ -79,13 +79,36 @@ public class Monitor {
      * Called by the massim server after each step.
      */
     public void updateState(JSONObject state) {
-        monitorSink.broadcast(state.toString(), !state.has("grid"));
+        updateState(state.toString(), state.has("grid"));
+    }
+
+    /**
+     * Updates the current state of the monitor with an already encoded state.
+     * @param encodedState the state as a JSON string
+     * @param isStatic whether the state contains the static data
+     */
+    public void updateState(String encodedState, boolean isStatic) {
+        monitorSink.broadcast(encodedState, !isStatic);
     }
 
     public void updateStatus(JSONObject status) {
         statusSink.broadcast(status.toString(), true);
     }
 
+    /**
+     * @return whether anyone is watching the live monitor (otherwise, dynamic state updates are not needed)
+     */
+    public boolean hasMonitorClients() {
+        return monitorSink.hasClients();
+    }
+
+    /**
+     * @return whether anyone is watching the status page (otherwise, status updates are not needed)
+     */
+    public boolean hasStatusClients() {
+        return statusSink.hasClients();
+    }
+
     public static void main(String[] args) throws ExecutionException, InterruptedException {
         int port = 8000;
         String path = null;
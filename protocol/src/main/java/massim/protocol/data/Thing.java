@@ -2,6 +2,8 @@ package massim.protocol.data;
 
 import org.json.JSONObject;
 
+import java.util.Objects;
+
 public class Thing {
 
     public static final String TYPE_ENTITY = "entity";
@@ -35,6 +37,23 @@ public class Thing {
         return new Thing(jsonThing.getInt("x"), jsonThing.getInt("y"), jsonThing.getString("type"), jsonThing.getString("details"));
     }
 
+    /**
+     * Things are equal if they have the same position, type and details (needed to compute percept deltas).
+     * Note that this makes equal things in the same cell (e.g. two markers of the same type) collapse into one
+     * in the server's set of visible things.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Thing other)) return false;
+        return x == other.x && y == other.y && Objects.equals(type, other.type) && Objects.equals(details, other.details);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(x, y, type, details);
+    }
+
     @Override
     public String toString() {
         return String.format("Thing((%d,%d), %s, %s)", x, y, type, details);
@@ -1,20 +1,73 @@
 package massim.protocol.messages;
 
+import org.json.JSONArray;
 import org.json.JSONObject;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 public class AuthRequestMessage extends Message {
 
     private String username;
     private String password;
+    private String protocol;
+    private String compression;
+    private boolean deltas;
+    private Map<String, String> multiplex;
+    private boolean batch;
 
     public AuthRequestMessage(JSONObject content) {
         this.username = content.optString("user");
         this.password = content.optString("pw");
+        this.protocol = content.optString("protocol", null);
+        this.compression = content.optString("compression", null);
+        this.deltas = content.optBoolean("deltas");
+        this.batch = content.optBoolean("batch");
+        var agents = content.optJSONArray("multiplex");
+        if (agents != null) {
+            this.multiplex = new LinkedHashMap<>();
+            for (var i = 0; i < agents.length(); i++) {
+                var agent = agents.getJSONObject(i);
+                this.multiplex.put(agent.optString("user"), agent.optString("pw"));
+            }
+        }
     }
 
     public AuthRequestMessage(String username, String password) {
+        this(username, password, null, null, false);
+    }
+
+    /**
+     * @param protocol name of the wire format to use after authentication or null for the default
+     * @param compression name of the compression to use after authentication or null for none
+     * @param deltas whether the percepts of request-action messages should be sent as deltas (if supported)
+     */
+    public AuthRequestMessage(String username, String password, String protocol, String compression,
+                              boolean deltas) {
+        this(username, password, protocol, compression, deltas, null);
+    }
+
+    /**
+     * @param multiplex usernames and passwords of further agents to authenticate for the same connection
+     *                  or null if the connection is not multiplexed
+     */
+    public AuthRequestMessage(String username, String password, String protocol, String compression,
+                              boolean deltas, Map<String, String> multiplex) {
+        this(username, password, protocol, compression, deltas, multiplex, false);
+    }
+
+    /**
+     * @param batch whether the messages for all agents of the multiplexed connection should be sent in batches
+     */
+    public AuthRequestMessage(String username, String password, String protocol, String compression,
+                              boolean deltas, Map<String, String> multiplex, boolean batch) {
         this.username = username;
         this.password = password;
+        this.protocol = protocol;
+        this.compression = compression;
+        this.deltas = deltas;
+        this.multiplex = multiplex;
+        this.batch = batch;
     }
 
     @Override
@@ -27,6 +80,15 @@ public class AuthRequestMessage extends Message {
         JSONObject content = new JSONObject();
         content.put("user", username);
         content.put("pw", password);
+        if (protocol != null) content.put("protocol", protocol);
+        if (compression != null) content.put("compression", compression);
+        if (deltas) content.put("deltas", true);
+        if (multiplex != null) {
+            var agents = new JSONArray();
+            multiplex.forEach((user, pw) -> agents.put(new JSONObject().put("user", user).put("pw", pw)));
+            content.put("multiplex", agents);
+        }
+        if (batch) content.put("batch", true);
         return content;
     }
 
@@ -37,4 +99,40 @@ public class AuthRequestMessage extends Message {
     public String getPassword() {
         return password;
     }
+
+    /**
+     * @return the requested wire format or null if none was requested
+     */
+    public String getProtocol() {
+        return protocol;
+    }
+
+    /**
+     * @return the requested compression or null if none was requested
+     */
+    public String getCompression() {
+        return compression;
+    }
+
+    /**
+     * @return whether percept deltas were requested
+     */
+    public boolean isDeltas() {
+        return deltas;
+    }
+
+    /**
+     * @return usernames and passwords of further agents to authenticate for the same connection
+     * or null if the connection should not be multiplexed
+     */
+    public Map<String, String> getMultiplex() {
+        return multiplex;
+    }
+
+    /**
+     * @return whether batches were requested for the multiplexed connection
+     */
+    public boolean isBatch() {
+        return batch;
+    }
 }
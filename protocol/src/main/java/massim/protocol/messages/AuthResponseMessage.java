@@ -1,7 +1,11 @@
 package massim.protocol.messages;
 
+import org.json.JSONArray;
 import org.json.JSONObject;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class AuthResponseMessage extends Message {
 
     public final static String OK = "ok";
@@ -9,15 +13,61 @@ public class AuthResponseMessage extends Message {
 
     private long time;
     private String result;
+    private String protocol;
+    private String compression;
+    private boolean deltas;
+    private List<String> multiplex;
+    private boolean batch;
 
     public AuthResponseMessage(JSONObject content) {
         this.time = content.optLong("time");
         this.result = content.optString("result");
+        this.protocol = content.optString("protocol", null);
+        this.compression = content.optString("compression", null);
+        this.deltas = content.optBoolean("deltas");
+        this.batch = content.optBoolean("batch");
+        var agents = content.optJSONArray("multiplex");
+        if (agents != null) {
+            this.multiplex = new ArrayList<>();
+            for (var i = 0; i < agents.length(); i++) this.multiplex.add(agents.getString(i));
+        }
     }
 
     public AuthResponseMessage(long time, String result) {
+        this(time, result, null, null, false);
+    }
+
+    /**
+     * @param protocol name of the wire format used from now on (only if one was requested)
+     * @param compression name of the compression used from now on (null if none)
+     * @param deltas whether the percepts of request-action messages are sent as deltas from now on
+     */
+    public AuthResponseMessage(long time, String result, String protocol, String compression,
+                               boolean deltas) {
+        this(time, result, protocol, compression, deltas, null);
+    }
+
+    /**
+     * @param multiplex names of the further agents authenticated for the same connection
+     *                  (null if the connection is not multiplexed)
+     */
+    public AuthResponseMessage(long time, String result, String protocol, String compression,
+                               boolean deltas, List<String> multiplex) {
+        this(time, result, protocol, compression, deltas, multiplex, false);
+    }
+
+    /**
+     * @param batch whether the messages of the multiplexed connection are sent in batches from now on
+     */
+    public AuthResponseMessage(long time, String result, String protocol, String compression,
+                               boolean deltas, List<String> multiplex, boolean batch) {
         this.time = time;
         this.result = result;
+        this.protocol = protocol;
+        this.compression = compression;
+        this.deltas = deltas;
+        this.multiplex = multiplex;
+        this.batch = batch;
     }
 
     @Override
@@ -29,6 +79,11 @@ public class AuthResponseMessage extends Message {
     public JSONObject makeContent() {
         JSONObject content = new JSONObject();
         content.put("result", result);
+        if (protocol != null) content.put("protocol", protocol);
+        if (compression != null) content.put("compression", compression);
+        if (deltas) content.put("deltas", true);
+        if (multiplex != null) content.put("multiplex", new JSONArray(multiplex));
+        if (batch) content.put("batch", true);
         return content;
     }
 
@@ -39,4 +94,40 @@ public class AuthResponseMessage extends Message {
     public String getResult() {
         return result;
     }
+
+    /**
+     * @return the wire format used after authentication or null if the server did not name one (i.e. JSON)
+     */
+    public String getProtocol() {
+        return protocol;
+    }
+
+    /**
+     * @return the compression used after authentication or null if there is none
+     */
+    public String getCompression() {
+        return compression;
+    }
+
+    /**
+     * @return whether percepts are sent as deltas after authentication
+     */
+    public boolean isDeltas() {
+        return deltas;
+    }
+
+    /**
+     * @return names of the further agents authenticated for the same connection
+     * or null if the connection is not multiplexed
+     */
+    public List<String> getMultiplex() {
+        return multiplex;
+    }
+
+    /**
+     * @return whether the messages of the multiplexed connection are sent in batches after authentication
+     */
+    public boolean isBatch() {
+        return batch;
+    }
 }
@@ -0,0 +1,52 @@
+package massim.protocol.messages;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Multiple messages (for different agents of a multiplexed connection) sent in one frame.
+ * Each contained message is tagged with its agent's name (see {@link Message#KEY_AGENT}).
+ */
+public class BatchMessage extends Message {
+
+    private List<JSONObject> messages;
+
+    /**
+     * @param messages the complete (tagged) messages to send together
+     */
+    public BatchMessage(List<JSONObject> messages) {
+        this.messages = messages;
+    }
+
+    public BatchMessage(JSONObject content) {
+        this.messages = new ArrayList<>();
+        var array = content.optJSONArray("messages");
+        if (array == null) return;
+        for (var i = 0; i < array.length(); i++) {
+            var message = array.optJSONObject(i);
+            if (message != null) this.messages.add(message);
+        }
+    }
+
+    @Override
+    public String getMessageType() {
+        return Message.TYPE_BATCH;
+    }
+
+    @Override
+    public JSONObject makeContent() {
+        JSONObject content = new JSONObject();
+        content.put("messages", new JSONArray(messages));
+        return content;
+    }
+
+    /**
+     * @return the (tagged) messages contained in this batch
+     */
+    public List<JSONObject> getMessages() {
+        return messages;
+    }
+}
@@ -15,6 +15,12 @@ public abstract class Message {
     public final static String TYPE_BYE = "bye";
     public final static String TYPE_STATUS_REQUEST = "status-request";
     public final static String TYPE_STATUS_RESPONSE = "status-response";
+    public final static String TYPE_BATCH = "batch";
+
+    /**
+     * Names the agent a message belongs to (only on multiplexed connections).
+     */
+    public final static String KEY_AGENT = "agent";
 
     public abstract String getMessageType();
 
@@ -27,6 +33,14 @@ public abstract class Message {
         return message;
     }
 
+    /**
+     * @return the JSON document to send over the network. It may contain pre-encoded parts
+     * (see {@link massim.protocol.util.PreEncodedJson}), but it is written exactly like {@link #toJson()}.
+     */
+    public JSONObject toWireJson() {
+        return toJson();
+    }
+
     public static Message buildFromJson(JSONObject src) {
         if(src == null) return null;
         String type = src.optString("type");
@@ -42,6 +56,7 @@ public abstract class Message {
             case TYPE_SIM_END: return new SimEndMessage(content);
             case TYPE_STATUS_REQUEST: return new StatusRequestMessage();
             case TYPE_STATUS_RESPONSE: return new StatusResponseMessage(content);
+            case TYPE_BATCH: return new BatchMessage(content);
             default: System.out.println("Message of type " + type + " cannot be build.");
         }
         return null;
@@ -33,21 +33,79 @@ public abstract class RequestActionMessage extends Message {
 
     @Override
     public JSONObject makeContent() {
+        return makeContent(makePercept());
+    }
+
+    private JSONObject makeContent(JSONObject percept) {
         JSONObject content = new JSONObject();
         content.put("id", id);
         content.put("time" , time);
         content.put("deadline", deadline);
         content.put("step", step);
-        content.put("percept", makePercept());
+        content.put("percept", percept);
         return content;
     }
 
+    @Override
+    public JSONObject toWireJson() {
+        JSONObject message = new JSONObject();
+        message.put("type", getMessageType());
+        message.put("content", makeContent(makeWirePercept()));
+        return message;
+    }
+
+    /**
+     * @param previous the last request-action message the receiver got
+     * @return the same as {@link #toWireJson()}, but the percept may only contain the changes relative to the
+     * previous message (if the percept supports this)
+     */
+    public JSONObject toDeltaWireJson(RequestActionMessage previous) {
+        var percept = makeDeltaPercept(previous);
+        if (percept == null) return toWireJson();
+        JSONObject message = new JSONObject();
+        message.put("type", getMessageType());
+        message.put("content", makeContent(percept));
+        return message;
+    }
+
     /**
      * Create the JSON representation of the percept part.
      * Will be appended under the "percept" key of the "content" object.
      */
     public abstract JSONObject makePercept();
 
+    /**
+     * Same as {@link #makePercept()}, but may contain pre-encoded parts to be copied when the message is written.
+     */
+    protected JSONObject makeWirePercept() {
+        return makePercept();
+    }
+
+    /**
+     * Same as {@link #makeWirePercept()}, but only containing the changes relative to the previous message.
+     * @return the percept or null if no delta can be created (i.e. the complete percept has to be sent)
+     */
+    protected JSONObject makeDeltaPercept(RequestActionMessage previous) {
+        return null;
+    }
+
+    /**
+     * @return true if this message was received as a delta and still needs to be completed with
+     * {@link #applyDelta(RequestActionMessage)}
+     */
+    public boolean isDelta() {
+        return false;
+    }
+
+    /**
+     * Completes a message received as a delta with the contents of the previous message.
+     * @param previous the last (complete) request-action message received before this one
+     * @return true if this message is complete now
+     */
+    public boolean applyDelta(RequestActionMessage previous) {
+        return !isDelta();
+    }
+
     public void updateIdAndDeadline(long id, long deadline) {
         this.id = id;
         this.deadline = deadline;
@@ -5,10 +5,12 @@ import massim.protocol.data.Position;
 import massim.protocol.messages.RequestActionMessage;
 import massim.protocol.data.TaskInfo;
 import massim.protocol.data.Thing;
+import massim.protocol.util.PreEncodedJson;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
 import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 public class StepPercept extends RequestActionMessage {
@@ -30,6 +32,30 @@ public class StepPercept extends RequestActionMessage {
     public List<Position> roleZones = new ArrayList<>();
     public Position optAbsolutePosition;
 
+    /**
+     * Task and norm percepts which are the same for all agents in a step. They are created (and encoded) only once
+     * per step and shared by all step percepts.
+     */
+    public record Shared(Set<TaskInfo> taskInfo, Set<NormInfo> normsInfo,
+                         PreEncodedJson encodedTasks, PreEncodedJson encodedNorms) {
+
+        /**
+         * @param taskInfo the task percepts, which must not be modified afterwards
+         * @param normsInfo the norm percepts, which must not be modified afterwards
+         */
+        public static Shared of(Set<TaskInfo> taskInfo, Set<NormInfo> normsInfo) {
+            return new Shared(taskInfo, normsInfo,
+                    new PreEncodedJson(tasksToJSON(taskInfo)), new PreEncodedJson(normsToJSON(normsInfo)));
+        }
+    }
+
+    private Shared shared;
+
+    /**
+     * Changes relative to the previous percept if this percept was received as a delta (until it is applied).
+     */
+    private JSONObject delta;
+
     public StepPercept(JSONObject content) {
         super(content);
         parsePercept(content.getJSONObject("percept"));
@@ -40,11 +66,22 @@ public class StepPercept extends RequestActionMessage {
                        List<Position> attachedThings, JSONArray stepEvents, String role, int energy,
                        boolean deactivated, List<String> violations, List<Position> goalZones, List<Position> roleZones,
                        Position optAbsolutePosition) {
+        this(step, score, things, new Shared(new HashSet<>(taskInfo), new HashSet<>(normInfo), null, null),
+                action, lastActionParams, result, attachedThings, stepEvents, role, energy, deactivated, violations,
+                goalZones, roleZones, optAbsolutePosition);
+    }
+
+    public StepPercept(int step, long score, Set<Thing> things, Shared shared,
+                       String action, List<String> lastActionParams, String result,
+                       List<Position> attachedThings, JSONArray stepEvents, String role, int energy,
+                       boolean deactivated, List<String> violations, List<Position> goalZones, List<Position> roleZones,
+                       Position optAbsolutePosition) {
         super(System.currentTimeMillis(), -1, -1, step); // id and deadline are updated later
         this.score = score;
         this.things.addAll(things);
-        this.taskInfo.addAll(taskInfo);
-        this.normsInfo.addAll(normInfo);
+        this.shared = shared;
+        this.taskInfo = shared.taskInfo();
+        this.normsInfo = shared.normsInfo();
         this.lastAction = action;
         this.lastActionResult = result;
         this.lastActionParams.addAll(lastActionParams);
@@ -61,11 +98,154 @@ public class StepPercept extends RequestActionMessage {
 
     @Override
     public JSONObject makePercept() {
+        return addVisibleParts(makeBasePercept(tasksToJSON(taskInfo), normsToJSON(normsInfo)));
+    }
+
+    @Override
+    protected JSONObject makeWirePercept() {
+        return addVisibleParts(makeWireBasePercept());
+    }
+
+    /**
+     * Creates a percept in which things and zones are replaced by the changes relative to the previous percept.
+     * All positions are relative to the agent, so if the agent moved, the previous things and zones are shifted
+     * accordingly before comparing them (the shift is part of the delta).
+     * @return the delta percept or null if it would not be smaller than the complete percept
+     */
+    @Override
+    protected JSONObject makeDeltaPercept(RequestActionMessage previous) {
+        if (!(previous instanceof StepPercept prev) || prev.isDelta() || isDelta()) return null;
+        JSONObject bestDelta = null;
+        var bestSize = things.size() + goalZones.size() + roleZones.size(); // size of the complete percept
+        for (var shift : possibleShifts()) {
+            var thingChanges = diff(shiftThings(prev.things, shift), things, Thing::toJSON);
+            var goalZoneChanges = diff(shiftPositions(prev.goalZones, shift), goalZones, Position::toJSON);
+            var roleZoneChanges = diff(shiftPositions(prev.roleZones, shift), roleZones, Position::toJSON);
+            var size = thingChanges.size() + goalZoneChanges.size() + roleZoneChanges.size();
+            if (size >= bestSize) continue;
+            bestSize = size;
+            bestDelta = new JSONObject()
+                    .put("things", thingChanges.toJSON())
+                    .put("goalZones", goalZoneChanges.toJSON())
+                    .put("roleZones", roleZoneChanges.toJSON());
+            if (shift.x != 0 || shift.y != 0) bestDelta.put("shift", shift.toJSON());
+        }
+        return bestDelta != null? makeWireBasePercept().put("delta", bestDelta) : null;
+    }
+
+    /**
+     * @return the possible shifts (relative to the agent) of everything since the previous percept, i.e. none and,
+     * if the agent's last action was a (partially) successful move, each part of that move
+     */
+    private List<Position> possibleShifts() {
+        var shifts = new ArrayList<Position>();
+        shifts.add(Position.of(0, 0));
+        if (!Actions.MOVE.equals(lastAction) || !(ActionResults.SUCCESS.equals(lastActionResult)
+                || ActionResults.PARTIAL_SUCCESS.equals(lastActionResult))) return shifts;
+        int dx = 0, dy = 0;
+        for (var direction : lastActionParams) {
+            switch (direction) {
+                case "n" -> dy++;
+                case "s" -> dy--;
+                case "e" -> dx--;
+                case "w" -> dx++;
+                default -> { return shifts; }
+            }
+            shifts.add(Position.of(dx, dy));
+        }
+        return shifts;
+    }
+
+    private static Collection<Thing> shiftThings(Collection<Thing> things, Position shift) {
+        if (shift.x == 0 && shift.y == 0) return things;
+        var result = new HashSet<Thing>();
+        for (var t : things) result.add(new Thing(t.x + shift.x, t.y + shift.y, t.type, t.details));
+        return result;
+    }
+
+    private static Collection<Position> shiftPositions(Collection<Position> positions, Position shift) {
+        if (shift.x == 0 && shift.y == 0) return positions;
+        var result = new HashSet<Position>();
+        for (var p : positions) result.add(Position.of(p.x + shift.x, p.y + shift.y));
+        return result;
+    }
+
+    @Override
+    public boolean isDelta() {
+        return delta != null;
+    }
+
+    @Override
+    public boolean applyDelta(RequestActionMessage previous) {
+        if (delta == null) return true;
+        if (!(previous instanceof StepPercept prev) || prev.isDelta()) return false;
+        var shiftJSON = delta.optJSONArray("shift");
+        var shift = shiftJSON != null? Position.fromJSON(shiftJSON) : Position.of(0, 0);
+        things = new HashSet<>(apply(shiftThings(prev.things, shift), delta.getJSONObject("things"),
+                json -> Thing.fromJson((JSONObject) json)));
+        goalZones = new ArrayList<>(apply(shiftPositions(prev.goalZones, shift), delta.getJSONObject("goalZones"),
+                json -> Position.fromJSON((JSONArray) json)));
+        roleZones = new ArrayList<>(apply(shiftPositions(prev.roleZones, shift), delta.getJSONObject("roleZones"),
+                json -> Position.fromJSON((JSONArray) json)));
+        delta = null;
+        return true;
+    }
+
+    private record Changes(JSONArray added, JSONArray removed) {
+
+        int size() {
+            return added.length() + removed.length();
+        }
+
+        JSONObject toJSON() {
+            return new JSONObject().put("added", added).put("removed", removed);
+        }
+    }
+
+    private static <T> Changes diff(Collection<T> previous, Collection<T> current, Function<T, Object> toJSON) {
+        var previousSet = previous instanceof Set<T> set? set : new HashSet<>(previous);
+        var currentSet = current instanceof Set<T> set? set : new HashSet<>(current);
+        var added = new JSONArray();
+        for (var t : currentSet) {
+            if (!previousSet.contains(t)) added.put(toJSON.apply(t));
+        }
+        var removed = new JSONArray();
+        for (var t : previousSet) {
+            if (!currentSet.contains(t)) removed.put(toJSON.apply(t));
+        }
+        return new Changes(added, removed);
+    }
+
+    private static <T> Set<T> apply(Collection<T> previous, JSONObject changes, Function<Object, T> fromJSON) {
+        var result = new LinkedHashSet<>(previous);
+        changes.getJSONArray("removed").forEach(json -> result.remove(fromJSON.apply(json)));
+        changes.getJSONArray("added").forEach(json -> result.add(fromJSON.apply(json)));
+        return result;
+    }
+
+    private JSONObject makeWireBasePercept() {
+        if (shared == null || shared.encodedTasks() == null
+                || shared.taskInfo() != taskInfo || shared.normsInfo() != normsInfo)
+            return makeBasePercept(tasksToJSON(taskInfo), normsToJSON(normsInfo));
+        return makeBasePercept(shared.encodedTasks(), shared.encodedNorms());
+    }
+
+    private static JSONArray tasksToJSON(Set<TaskInfo> taskInfo) {
+        return new JSONArray(taskInfo.stream().map(TaskInfo::toJSON).collect(Collectors.toList()));
+    }
+
+    private static JSONArray normsToJSON(Set<NormInfo> normsInfo) {
+        return new JSONArray(normsInfo.stream().map(NormInfo::toJSON).collect(Collectors.toList()));
+    }
+
+    /**
+     * @return the percept without things and zones
+     */
+    private JSONObject makeBasePercept(Object tasks, Object norms) {
         var percept = new JSONObject()
                 .put("score", score)
-                .put("things", new JSONArray(things.stream().map(Thing::toJSON).collect(Collectors.toList())))
-                .put("tasks", new JSONArray(taskInfo.stream().map(TaskInfo::toJSON).collect(Collectors.toList())))
-                .put("norms", new JSONArray(normsInfo.stream().map(NormInfo::toJSON).collect(Collectors.toList())))
+                .put("tasks", tasks)
+                .put("norms", norms)
                 .put("energy", energy)
                 .put("deactivated", deactivated)
                 .put("lastAction", lastAction)
@@ -74,17 +254,23 @@ public class StepPercept extends RequestActionMessage {
                 .put("events", stepEvents != null? stepEvents : new JSONArray())
                 .put("role", this.role)
                 .put("attached", new JSONArray(attachedThings.stream().map(Position::toJSON).collect(Collectors.toList())))
-                .put("violations", new JSONArray(violations))
-                .put("goalZones", new JSONArray(this.goalZones.stream().map(Position::toJSON).collect(Collectors.toList())))
-                .put("roleZones", new JSONArray(this.roleZones.stream().map(Position::toJSON).collect(Collectors.toList())));
+                .put("violations", new JSONArray(violations));
         if (optAbsolutePosition != null)
             percept.put("absolutePosition", optAbsolutePosition.toJSON());
         return percept;
     }
 
+    private JSONObject addVisibleParts(JSONObject percept) {
+        return percept
+                .put("things", new JSONArray(things.stream().map(Thing::toJSON).collect(Collectors.toList())))
+                .put("goalZones", new JSONArray(this.goalZones.stream().map(Position::toJSON).collect(Collectors.toList())))
+                .put("roleZones", new JSONArray(this.roleZones.stream().map(Position::toJSON).collect(Collectors.toList())));
+    }
+
     private void parsePercept(JSONObject percept) {
         this.score = percept.getLong("score");
-        JSONArray jsonThings = percept.getJSONArray("things");
+        this.delta = percept.optJSONObject("delta");
+        JSONArray jsonThings = delta == null? percept.getJSONArray("things") : new JSONArray();
         JSONArray jsonTasks = percept.getJSONArray("tasks");
         JSONArray jsonNorms = percept.getJSONArray("norms");
         for (int i = 0; i < jsonThings.length(); i++) {
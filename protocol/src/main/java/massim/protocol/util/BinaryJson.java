@@ -0,0 +1,247 @@
+package massim.protocol.util;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.json.JSONString;
+import org.json.JSONTokener;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary encoding of JSON documents (used by the binary-v1 wire format).
+ * <p>
+ * Each value starts with a tag byte. Integers are written as zig-zag varints, doubles as 8 bytes.
+ * Strings are written only once per document: the first occurrence adds the string to a table, every later
+ * occurrence only refers to its table index. The table initially contains the keys and values which appear in
+ * most messages (see {@link #DICTIONARY}), so e.g. <code>"type":"obstacle"</code> usually costs only two bytes.
+ */
+public final class BinaryJson {
+
+    private static final int NULL = 0;
+    private static final int FALSE = 1;
+    private static final int TRUE = 2;
+    private static final int INT = 3;
+    private static final int DOUBLE = 4;
+    private static final int STRING = 5;
+    private static final int STRING_REF = 6;
+    private static final int OBJECT = 7;
+    private static final int ARRAY = 8;
+
+    /**
+     * Strings known to both sides in advance. Part of the format: entries must never be removed or reordered.
+     */
+    private static final List<String> DICTIONARY = List.of(
+            // message structure
+            "type", "content", "time", "id", "deadline", "step", "percept",
+            "request-action", "action", "auth-request", "auth-response", "sim-start", "sim-end", "bye",
+            "status-request", "status-response",
+            // percepts
+            "score", "things", "x", "y", "details", "tasks", "name", "reward", "requirements", "norms", "start",
+            "until", "level", "quantity", "role", "roles", "punishment", "energy", "deactivated", "lastAction",
+            "lastActionResult", "lastActionParams", "attached", "violations", "goalZones", "roleZones", "events",
+            "absolutePosition", "p", "result", "ranking", "team", "teamSize", "steps", "vision", "actions", "speed",
+            "clear", "chance", "maxDistance",
+            // thing types and details
+            "entity", "block", "dispenser", "obstacle", "marker", "b0", "b1", "b2", "b3", "default", "worker",
+            "constructor", "explorer", "digger",
+            // actions and results
+            "move", "skip", "attach", "detach", "rotate", "connect", "disconnect", "request", "submit", "survey",
+            "adopt", "n", "s", "e", "w", "cw", "ccw",
+            "success", "partial_success", "failed", "failed_random", "failed_parameter", "failed_path",
+            "failed_partner", "failed_target", "failed_blocked", "failed_status", "failed_resources",
+            "failed_location", "failed_role", "no_action", "unknown_action", "unprocessed", ""
+    );
+
+    private static final Map<String, Integer> DICTIONARY_INDEX = new HashMap<>();
+    static {
+        for (var i = 0; i < DICTIONARY.size(); i++) DICTIONARY_INDEX.put(DICTIONARY.get(i), i);
+    }
+
+    private BinaryJson() {}
+
+    /**
+     * @return the encoded document
+     */
+    public static byte[] encode(JSONObject json) {
+        var encoder = new Encoder();
+        encoder.writeValue(json);
+        return encoder.toByteArray();
+    }
+
+    /**
+     * @param data buffer containing exactly one encoded JSON object
+     * @return the decoded JSON object
+     * @throws IOException if the data is not a valid encoding of an object
+     */
+    public static JSONObject decode(byte[] data) throws IOException {
+        var value = new Decoder(data).readValue();
+        if (value instanceof JSONObject json) return json;
+        throw new IOException("binary document is not a JSON object");
+    }
+
+    private static class Encoder extends ByteArrayOutputStream {
+
+        private final Map<String, Integer> strings = new HashMap<>();
+
+        Encoder() {
+            super(1024);
+        }
+
+        void writeValue(Object value) {
+            if (value == null || value == JSONObject.NULL) write(NULL);
+            else if (value instanceof Boolean b) write(b? TRUE : FALSE);
+            else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+                write(INT);
+                writeVarLong(((Number) value).longValue());
+            }
+            else if (value instanceof BigInteger i && i.bitLength() < 64) {
+                write(INT);
+                writeVarLong(i.longValue());
+            }
+            else if (value instanceof Number n) {
+                write(DOUBLE);
+                var bits = Double.doubleToLongBits(n.doubleValue());
+                for (var shift = 56; shift >= 0; shift -= 8) write((int) (bits >>> shift));
+            }
+            else if (value instanceof CharSequence s) writeString(s.toString());
+            else if (value instanceof Enum<?> e) writeString(e.name());
+            else if (value instanceof JSONObject json) {
+                write(OBJECT);
+                writeVarLong(json.length());
+                for (var key : json.keySet()) {
+                    writeString(key);
+                    writeValue(json.opt(key));
+                }
+            }
+            else if (value instanceof JSONArray array) {
+                write(ARRAY);
+                writeVarLong(array.length());
+                for (var i = 0; i < array.length(); i++) writeValue(array.opt(i));
+            }
+            else if (value instanceof PreEncodedJson pre) writeValue(pre.getValue());
+            else if (value instanceof JSONString s) writeValue(new JSONTokener(s.toJSONString()).nextValue());
+            else if (value instanceof Map<?, ?> || value instanceof Collection<?> || value.getClass().isArray())
+                writeValue(JSONObject.wrap(value));
+            else writeString(value.toString());
+        }
+
+        private void writeString(String s) {
+            var index = DICTIONARY_INDEX.get(s);
+            if (index == null) index = strings.get(s);
+            if (index != null) {
+                write(STRING_REF);
+                writeVarLong(index);
+                return;
+            }
+            strings.put(s, DICTIONARY.size() + strings.size());
+            var bytes = s.getBytes(StandardCharsets.UTF_8);
+            write(STRING);
+            writeVarLong(bytes.length);
+            write(bytes, 0, bytes.length);
+        }
+
+        private void writeVarLong(long value) {
+            var v = (value << 1) ^ (value >> 63); // zig-zag, so that small negative numbers stay small
+            while ((v & ~0x7FL) != 0) {
+                write((int) ((v & 0x7F) | 0x80));
+                v >>>= 7;
+            }
+            write((int) v);
+        }
+    }
+
+    private static class Decoder {
+
+        private final byte[] data;
+        private int pos = 0;
+        private final List<String> strings = new ArrayList<>();
+
+        Decoder(byte[] data) {
+            this.data = data;
+        }
+
+        Object readValue() throws IOException {
+            var tag = readByte();
+            switch (tag) {
+                case NULL: return JSONObject.NULL;
+                case FALSE: return Boolean.FALSE;
+                case TRUE: return Boolean.TRUE;
+                case INT: {
+                    var value = readVarLong();
+                    if (value == (int) value) return (int) value;
+                    return value;
+                }
+                case DOUBLE: {
+                    var bits = 0L;
+                    for (var i = 0; i < 8; i++) bits = (bits << 8) | readByte();
+                    return Double.longBitsToDouble(bits);
+                }
+                case STRING:
+                case STRING_REF:
+                    return readString(tag);
+                case OBJECT: {
+                    var size = readSize();
+                    var json = new JSONObject();
+                    for (var i = 0; i < size; i++) {
+                        var keyTag = readByte();
+                        if (keyTag != STRING && keyTag != STRING_REF) throw new IOException("invalid key tag " + keyTag);
+                        json.put(readString(keyTag), readValue());
+                    }
+                    return json;
+                }
+                case ARRAY: {
+                    var size = readSize();
+                    var array = new JSONArray();
+                    for (var i = 0; i < size; i++) array.put(readValue());
+                    return array;
+                }
+                default: throw new IOException("invalid tag " + tag);
+            }
+        }
+
+        private String readString(int tag) throws IOException {
+            if (tag == STRING_REF) {
+                var index = readVarLong();
+                if (index < 0 || index >= DICTIONARY.size() + strings.size())
+                    throw new IOException("invalid string reference " + index);
+                return index < DICTIONARY.size()? DICTIONARY.get((int) index) : strings.get((int) index - DICTIONARY.size());
+            }
+            var length = readSize();
+            if (length > data.length - pos) throw new EOFException();
+            var s = new String(data, pos, length, StandardCharsets.UTF_8);
+            pos += length;
+            strings.add(s);
+            return s;
+        }
+
+        private int readSize() throws IOException {
+            var size = readVarLong();
+            if (size < 0 || size > data.length) throw new IOException("invalid size " + size);
+            return (int) size;
+        }
+
+        private long readVarLong() throws IOException {
+            var v = 0L;
+            for (var shift = 0; shift < 64; shift += 7) {
+                var b = readByte();
+                v |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return (v >>> 1) ^ -(v & 1);
+            }
+            throw new IOException("varint too long");
+        }
+
+        private int readByte() throws IOException {
+            if (pos >= data.length) throw new EOFException();
+            return data[pos++] & 0xFF;
+        }
+    }
+}
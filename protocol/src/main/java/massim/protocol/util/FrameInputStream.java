@@ -0,0 +1,108 @@
+package massim.protocol.util;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A buffered input stream which can read whole 0-terminated messages at once.
+ * Data is read from the underlying stream in large chunks, which are scanned for the terminator.
+ * All buffers are reused between messages. Not thread-safe (one reading thread per connection).
+ */
+public class FrameInputStream extends InputStream {
+
+    private static final int DEFAULT_BUFFER_SIZE = 65536;
+
+    private final InputStream in;
+    private final byte[] buffer;
+    private int position;
+    private int limit;
+    private byte[] frame = new byte[DEFAULT_BUFFER_SIZE]; // collects messages spanning multiple chunks
+
+    public FrameInputStream(InputStream in) {
+        this(in, DEFAULT_BUFFER_SIZE);
+    }
+
+    public FrameInputStream(InputStream in, int bufferSize) {
+        this.in = in;
+        this.buffer = new byte[bufferSize];
+    }
+
+    /**
+     * Reads the next chunk from the underlying stream (blocking).
+     * @return false if the stream ended
+     */
+    private boolean fill() throws IOException {
+        var n = in.read(buffer, 0, buffer.length);
+        if (n <= 0) return false;
+        position = 0;
+        limit = n;
+        return true;
+    }
+
+    /**
+     * Reads all bytes up to the next 0 byte (which is consumed as well) and decodes them as UTF-8.
+     * @param maxLength maximum number of bytes of one message; bigger messages are skipped
+     * @return the message or null if it was too big
+     * @throws EOFException if the stream ended before the terminator
+     */
+    public String readTerminated(int maxLength) throws IOException {
+        var length = 0;
+        var skipping = false;
+        while (true) {
+            if (position >= limit && !fill()) throw new EOFException();
+            var start = position;
+            var end = start;
+            while (end < limit && buffer[end] != 0) end++;
+            var chunk = end - start;
+            var terminated = end < limit;
+            position = terminated? end + 1 : end;
+
+            if (skipping || length + chunk > maxLength) {
+                skipping = true;
+            }
+            else if (terminated && length == 0) {
+                return new String(buffer, start, chunk, StandardCharsets.UTF_8); // complete message in the buffer
+            }
+            else {
+                if (length + chunk > frame.length)
+                    frame = Arrays.copyOf(frame, Math.max(2 * frame.length, length + chunk));
+                System.arraycopy(buffer, start, frame, length, chunk);
+                length += chunk;
+            }
+
+            if (terminated) return skipping? null : new String(frame, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (position >= limit && !fill()) return -1;
+        return buffer[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) return 0;
+        if (position >= limit) {
+            if (len >= buffer.length) return in.read(b, off, len); // no need to copy big reads twice
+            if (!fill()) return -1;
+        }
+        var n = Math.min(len, limit - position);
+        System.arraycopy(buffer, position, b, off, n);
+        position += n;
+        return n;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return limit - position + in.available();
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,43 @@
+package massim.protocol.util;
+
+import org.json.JSONArray;
+import org.json.JSONString;
+
+/**
+ * A JSON value that is shared by many messages (e.g. the tasks of a step, which every agent receives).
+ * It is encoded only once and copied verbatim whenever a JSON document containing it is written.
+ */
+public final class PreEncodedJson implements JSONString {
+
+    private final JSONArray value;
+    private volatile String encoded;
+
+    public PreEncodedJson(JSONArray value) {
+        this.value = value;
+    }
+
+    /**
+     * @return the value (not encoded)
+     */
+    public JSONArray getValue() {
+        return value;
+    }
+
+    /**
+     * @return the encoded value (encoded on first use)
+     */
+    @Override
+    public String toJSONString() {
+        var result = encoded;
+        if (result == null) {
+            result = value.toString();
+            encoded = result;
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return toJSONString();
+    }
+}
@@ -0,0 +1,145 @@
+package massim.protocol.util;
+
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Writes and reads the messages of one connection in the negotiated {@link WireFormat}, optionally compressed.
+ * <p>
+ * If compression is enabled, each message is encoded in the wire format (without its own framing), compressed
+ * with raw deflate using the preset {@link #DICTIONARY} and written as a length-prefixed frame.
+ * Each message is compressed separately, so no state is shared between frames.
+ * <p>
+ * Writing and reading may happen concurrently (from one thread each).
+ */
+public final class WireCodec {
+
+    /**
+     * Name of the compression method used to negotiate it.
+     */
+    public static final String DEFLATE = "deflate";
+
+    /**
+     * Preset dictionary for deflate, made of fragments of typical messages. Part of the protocol: must not be changed.
+     * Deflate prefers recent (i.e. later) fragments, so the most frequent ones are at the end.
+     */
+    private static final byte[] DICTIONARY = (
+            "{\"type\":\"sim-start\",\"content\":{\"percept\":{\"name\":\"\",\"team\":\"\",\"teamSize\":,\"steps\":," +
+            "\"roles\":[{\"name\":\"default\",\"vision\":5,\"actions\":[\"skip\",\"move\",\"rotate\",\"adopt\"," +
+            "\"request\",\"attach\",\"detach\",\"connect\",\"disconnect\",\"submit\",\"clear\",\"survey\"]," +
+            "\"speed\":[1,0],\"clear\":{\"chance\":1,\"maxDistance\":1}}]}}}" +
+            "{\"type\":\"sim-end\",\"content\":{\"ranking\":1,\"score\":0,\"time\":}}{\"type\":\"bye\",\"content\":{}}" +
+            "{\"type\":\"action\",\"content\":{\"id\":,\"type\":\"move\",\"p\":[\"n\"]}}" +
+            "\"norms\":[{\"name\":\"n0\",\"start\":,\"until\":,\"requirements\":" +
+            "[{\"type\":\"role\",\"name\":\"default\",\"quantity\":1,\"details\":\"\"}],\"punishment\":}]" +
+            "\"tasks\":[{\"reward\":,\"requirements\":[{\"x\":0,\"y\":1,\"details\":\"b0\",\"type\":\"\"}]," +
+            "\"name\":\"task\",\"deadline\":}]," +
+            "\"lastActionResult\":\"success\",\"failed_path\",\"failed_parameter\",\"failed_random\"," +
+            "{\"type\":\"request-action\",\"content\":{\"step\":,\"id\":,\"time\":,\"percept\":" +
+            "{\"lastActionParams\":[],\"role\":\"default\",\"violations\":[],\"deactivated\":false," +
+            "\"goalZones\":[],\"roleZones\":[],\"score\":0,\"lastAction\":\"skip\",\"things\":[]," +
+            "\"attached\":[],\"events\":[],\"energy\":100},\"deadline\":}}" +
+            "[0,1],[1,0],[0,-1],[-1,0],[1,1],[-1,-1],[2,0],[0,2],[-2,0],[0,-2]," +
+            "{\"x\":0,\"y\":0,\"details\":\"A\",\"type\":\"entity\"}," +
+            "{\"x\":1,\"y\":0,\"details\":\"b1\",\"type\":\"dispenser\"}," +
+            "{\"x\":0,\"y\":1,\"details\":\"b0\",\"type\":\"block\"}," +
+            "{\"x\":-1,\"y\":2,\"details\":\"\",\"type\":\"obstacle\"}," +
+            "{\"x\":1,\"y\":-2,\"details\":\"\",\"type\":\"obstacle\"},"
+    ).getBytes(StandardCharsets.UTF_8);
+
+    private final WireFormat format;
+    private final boolean compressed;
+
+    private final Deflater deflater;
+    private final Inflater inflater;
+    private byte[] outBuffer = new byte[4096];
+    private byte[] inBuffer = new byte[4096];
+
+    /**
+     * @param format the wire format to use
+     * @param compressed whether messages are compressed
+     */
+    public WireCodec(WireFormat format, boolean compressed) {
+        this.format = format;
+        this.compressed = compressed;
+        this.deflater = compressed? new Deflater(Deflater.BEST_SPEED, true) : null;
+        this.inflater = compressed? new Inflater(true) : null;
+    }
+
+    public WireFormat getFormat() {
+        return format;
+    }
+
+    public boolean isCompressed() {
+        return compressed;
+    }
+
+    /**
+     * Writes one message and flushes the stream.
+     */
+    public void write(OutputStream out, JSONObject message) throws IOException {
+        if (!compressed) {
+            format.write(out, message);
+            return;
+        }
+        var data = format.encode(message);
+        synchronized (deflater) {
+            deflater.reset();
+            deflater.setDictionary(DICTIONARY);
+            deflater.setInput(data);
+            deflater.finish();
+            var length = 0;
+            while (!deflater.finished()) {
+                if (length == outBuffer.length) outBuffer = Arrays.copyOf(outBuffer, outBuffer.length * 2);
+                length += deflater.deflate(outBuffer, length, outBuffer.length - length);
+            }
+            WireFormat.writeFrame(out, outBuffer, length);
+        }
+    }
+
+    /**
+     * Reads one message.
+     * @param maxLength maximum number of bytes of one message (compressed and uncompressed); bigger messages are skipped
+     * @return the message or null if it was too big
+     * @throws java.io.EOFException if the stream ended
+     * @throws IOException if the message could not be read
+     * @throws org.json.JSONException if a JSON message could not be parsed
+     */
+    public JSONObject read(InputStream in, int maxLength) throws IOException {
+        if (!compressed) return format.read(in, maxLength);
+        var body = WireFormat.readFrame(in, maxLength);
+        if (body == null) return null;
+        byte[] data;
+        synchronized (inflater) {
+            inflater.reset();
+            inflater.setDictionary(DICTIONARY);
+            inflater.setInput(body);
+            var length = 0;
+            try {
+                while (!inflater.finished()) {
+                    if (length == inBuffer.length) {
+                        if (length >= maxLength) return null; // inflated message too big
+                        inBuffer = Arrays.copyOf(inBuffer, (int) Math.min((long) inBuffer.length * 2, maxLength));
+                    }
+                    var n = inflater.inflate(inBuffer, length, inBuffer.length - length);
+                    if (n == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                        throw new IOException("incomplete compressed message");
+                    length += n;
+                }
+            } catch (DataFormatException e) {
+                throw new IOException("invalid compressed message", e);
+            }
+            if (length > maxLength) return null;
+            data = Arrays.copyOf(inBuffer, length);
+        }
+        return format.decode(data);
+    }
+}
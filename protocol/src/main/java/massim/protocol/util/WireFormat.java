@@ -0,0 +1,162 @@
+package massim.protocol.util;
+
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The ways messages can be written to a connection. The format is negotiated with the auth-request
+ * (which itself is always sent as JSON). JSON is the default.
+ */
+public enum WireFormat {
+
+    /**
+     * JSON text, each message terminated by a 0 byte.
+     */
+    JSON("json") {
+        @Override
+        public byte[] encode(JSONObject message) {
+            return message.toString().getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public JSONObject decode(byte[] data) {
+            return new JSONObject(new String(data, StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public void write(OutputStream out, JSONObject message) throws IOException {
+            out.write(encode(message));
+            out.write(0);
+            out.flush();
+        }
+
+        @Override
+        public JSONObject read(InputStream in, int maxLength) throws IOException {
+            if (in instanceof FrameInputStream frames) {
+                var text = frames.readTerminated(maxLength);
+                return text != null? new JSONObject(text) : null;
+            }
+            var buffer = new ByteArrayOutputStream();
+            var skipping = false;
+            int b;
+            while ((b = in.read()) != 0) {
+                if (b == -1) throw new EOFException();
+                if (buffer.size() < maxLength) buffer.write(b);
+                else skipping = true;
+            }
+            if (skipping) return null;
+            return new JSONObject(buffer.toString(StandardCharsets.UTF_8));
+        }
+    },
+
+    /**
+     * Each message is prefixed with its length (4 bytes, big-endian) and encoded with {@link BinaryJson}.
+     */
+    BINARY_V1("binary-v1") {
+        @Override
+        public byte[] encode(JSONObject message) {
+            return BinaryJson.encode(message);
+        }
+
+        @Override
+        public JSONObject decode(byte[] data) throws IOException {
+            return BinaryJson.decode(data);
+        }
+
+        @Override
+        public void write(OutputStream out, JSONObject message) throws IOException {
+            var body = encode(message);
+            writeFrame(out, body, body.length);
+        }
+
+        @Override
+        public JSONObject read(InputStream in, int maxLength) throws IOException {
+            var body = readFrame(in, maxLength);
+            return body != null? decode(body) : null;
+        }
+    };
+
+    private final String name;
+
+    WireFormat(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return the name used to negotiate this format
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the format with the given name or null if there is none
+     */
+    public static WireFormat fromName(String name) {
+        for (var format : values()) {
+            if (format.name.equals(name)) return format;
+        }
+        return null;
+    }
+
+    /**
+     * @return the message encoded in this format (without any framing)
+     */
+    public abstract byte[] encode(JSONObject message);
+
+    /**
+     * @param data exactly one message encoded in this format (without any framing)
+     * @return the decoded message
+     * @throws IOException if the data is not a valid encoding
+     * @throws org.json.JSONException if a JSON message could not be parsed
+     */
+    public abstract JSONObject decode(byte[] data) throws IOException;
+
+    /**
+     * Writes one message and flushes the stream.
+     */
+    public abstract void write(OutputStream out, JSONObject message) throws IOException;
+
+    /**
+     * Reads one message. Reading is much faster from a {@link FrameInputStream}.
+     * @param maxLength maximum number of bytes of one message; bigger messages are skipped
+     * @return the message or null if it was too big
+     * @throws EOFException if the stream ended
+     * @throws IOException if the message could not be read
+     * @throws org.json.JSONException if a JSON message could not be parsed
+     */
+    public abstract JSONObject read(InputStream in, int maxLength) throws IOException;
+
+    /**
+     * Writes a frame (the length of the body as 4 bytes, big-endian, followed by the body) and flushes the stream.
+     */
+    static void writeFrame(OutputStream out, byte[] body, int length) throws IOException {
+        out.write(new byte[]{(byte) (length >>> 24), (byte) (length >>> 16), (byte) (length >>> 8), (byte) length});
+        out.write(body, 0, length);
+        out.flush();
+    }
+
+    /**
+     * Reads a frame written by {@link #writeFrame(OutputStream, byte[], int)}.
+     * @return the body of the frame or null if it was bigger than maxLength (and skipped)
+     */
+    static byte[] readFrame(InputStream in, int maxLength) throws IOException {
+        var header = in.readNBytes(4);
+        if (header.length < 4) throw new EOFException();
+        var length = (header[0] & 0xFF) << 24 | (header[1] & 0xFF) << 16 | (header[2] & 0xFF) << 8 | (header[3] & 0xFF);
+        if (length < 0) throw new IOException("invalid frame length " + length);
+        if (length > maxLength) {
+            in.skipNBytes(length);
+            return null;
+        }
+        var body = in.readNBytes(length);
+        if (body.length < length) throw new EOFException();
+        return body;
+    }
+}
@@ -3,17 +3,20 @@ package massim;
 import massim.config.TeamConfig;
 import massim.protocol.messages.*;
 import massim.protocol.messages.scenario.Actions;
+import massim.protocol.util.FrameInputStream;
+import massim.protocol.util.WireCodec;
 import massim.util.Log;
 import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.*;
 import java.net.Socket;
-import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -29,6 +32,11 @@ class AgentManager {
     private boolean disconnecting = false;
     private int maxPacketLength;
 
+    /**
+     * A complete percept is sent after this many percept deltas (0 if deltas are disabled).
+     */
+    private int perceptResync;
+
     /**
      * If an agent's sendQueue is already "full", the oldest element will be removed before a new one is added
      */
@@ -40,13 +48,22 @@ class AgentManager {
      * @param agentTimeout the timeout to use for request-action messages (to wait for actions) in milliseconds
      * @param maxPacketLength the maximum size of packets to <b>process</b> (they are received anyway, just not parsed
      *                        in case they are too big)
+     * @param perceptResync number of percept deltas after which a complete percept is sent (0 to disable deltas)
      */
-    AgentManager(List<TeamConfig> teams, long agentTimeout, int maxPacketLength) {
+    AgentManager(List<TeamConfig> teams, long agentTimeout, int maxPacketLength, int perceptResync) {
         teams.forEach(team -> team.getAgentNames().forEach((name) -> {
             agents.put(name, new AgentProxy(name, team.getName(), team.getPassword(name)));
         }));
         this.agentTimeout = agentTimeout;
         this.maxPacketLength = maxPacketLength;
+        this.perceptResync = perceptResync;
+    }
+
+    /**
+     * @return whether percepts can be sent as deltas
+     */
+    boolean isPerceptDeltasEnabled() {
+        return perceptResync > 0;
     }
 
     /**
@@ -54,16 +71,32 @@ class AgentManager {
      */
     void stop(){
         disconnecting = true;
-        agents.values().forEach(AgentProxy::close);
+        var connections = new LinkedHashSet<Connection>();
+        agents.values().forEach(agent -> {
+            agent.sendMessage(new ByeMessage(System.currentTimeMillis()));
+            if (agent.connection != null) connections.add(agent.connection);
+        });
+        connections.forEach(Connection::finish);
     }
 
     /**
-     * Sets a new socket for the given agent that was just authenticated (again or for the first time).
-     * @param s the new socket opened for the agent
-     * @param agentName the name of the agent
+     * Sets a new socket for the given agents that were just authenticated (again or for the first time).
+     * @param s the new socket opened for the agents
+     * @param agentNames the names of all agents using the socket
+     * @param multiplexed whether messages on the socket are tagged with the agent's name
+     *                    (otherwise, there must be only one agent)
+     * @param batch whether the request-action messages of all agents (of a multiplexed connection) are sent in one
+     *              batch per step
+     * @param codec the codec for the wire format and compression negotiated for the connection
+     * @param deltas whether percept deltas were negotiated for the connection
      */
-    void handleNewConnection(Socket s, String agentName){
-        if (agents.containsKey(agentName)) agents.get(agentName).handleNewConnection(s);
+    void handleNewConnection(Socket s, List<String> agentNames, boolean multiplexed, boolean batch, WireCodec codec,
+                             boolean deltas){
+        var proxies = agentNames.stream().map(agents::get).filter(Objects::nonNull).toList();
+        if (proxies.isEmpty()) return;
+        var connection = new Connection(s, multiplexed, multiplexed && batch, codec, deltas);
+        proxies.forEach(connection::attach);
+        connection.start();
     }
 
     /**
@@ -76,6 +109,18 @@ class AgentManager {
         return agents.containsKey(user) && agents.get(user).password.equals(inPass);
     }
 
+    /**
+     * Checks if the given credentials are valid for an agent of the same team as the given (authenticated) agent.
+     * @param teammate name of the agent whose team the other agent has to belong to
+     * @param user name of the agent
+     * @param inPass password of the agent
+     * @return true iff the credentials are valid and both agents belong to the same team
+     */
+    boolean authTeammate(String teammate, String user, String inPass) {
+        return auth(user, inPass) && agents.containsKey(teammate)
+                && agents.get(teammate).teamName.equals(agents.get(user).teamName);
+    }
+
     /**
      * Sends initial percepts to the agents and stores them for later (possible agent reconnection).
      * @param initialPercepts mapping from agent names to initial percepts
@@ -91,26 +136,24 @@ class AgentManager {
     /**
      * Uses the percepts to send a request-action message and waits for the action answers.
      * {@link #agentTimeout} is used to limit the waiting time per agent.
+     * The percepts of all agents sharing a batched connection are sent together.
      * @param percepts mapping from agent names to percepts of the current simulation state
      * @return mapping from agent names to actions received in response
      */
     Map<String, ActionMessage> requestActions(Map<String, RequestActionMessage> percepts) {
-        // each thread needs to countdown the latch when it finishes
-        CountDownLatch latch = new CountDownLatch(percepts.keySet().size());
-        Map<String, ActionMessage> resultMap = new ConcurrentHashMap<>();
+        List<CompletableFuture<Map<String, ActionMessage>>> futureActions = new ArrayList<>();
+        Map<Connection, Map<AgentProxy, RequestActionMessage>> batches = new HashMap<>();
         percepts.forEach((agName, percept) -> {
-            // start a new thread to get each action
-            new Thread(() -> {
-                ActionMessage action = agents.get(agName).requestAction(percept);
-                resultMap.put(agName, action);
-                latch.countDown();
-            }).start();
+            var agent = agents.get(agName);
+            var connection = agent.connection;
+            if (connection != null && connection.batch)
+                batches.computeIfAbsent(connection, c -> new HashMap<>()).put(agent, percept);
+            else
+                futureActions.add(agent.requestAction(percept).thenApply(action -> Map.of(agName, action)));
         });
-        try {
-            latch.await();
-        } catch (InterruptedException e) {
-            Log.log(Log.Level.ERROR, "Latch interrupted. Actions probably incomplete.");
-        }
+        batches.forEach((connection, batch) -> futureActions.add(connection.requestActions(batch)));
+        Map<String, ActionMessage> resultMap = new HashMap<>();
+        futureActions.forEach(futureAction -> resultMap.putAll(futureAction.join()));
         return resultMap;
     }
 
@@ -128,7 +171,7 @@ class AgentManager {
 
     /**
      * Stores account info of an agent.
-     * Receives messages from and sends messages to remote agents.
+     * Messages to and from the remote agent are sent and received by the agent's current {@link Connection}.
      */
     private class AgentProxy {
 
@@ -138,13 +181,11 @@ class AgentManager {
         private String password;
 
         // networking things
-        private Socket socket;
-        private Thread sendThread;
-        private Thread receiveThread;
+        private volatile Connection connection;
 
         // concurrency magic
         private AtomicLong messageCounter = new AtomicLong();
-        private LinkedBlockingDeque<JSONObject> sendQueue = new LinkedBlockingDeque<>();
+        private LinkedBlockingDeque<Message> sendQueue = new LinkedBlockingDeque<>();
         private Map<Long, CompletableFuture<JSONObject>> futureActions = new ConcurrentHashMap<>();
 
         private SimStartMessage lastSimStartMessage;
@@ -172,29 +213,37 @@ class AgentManager {
 
         /**
          * Creates a request-action message and sends it to the agent.
-         * Should be called within a new thread, as it blocks up to {@link #agentTimeout} milliseconds.
          * @param percept the step percept to forward
-         * @return the action that was received by the agent (or {@link Actions#NO_ACTION})
+         * @return the action that will be received by the agent (or {@link Actions#NO_ACTION} if none was received
+         * within {@link #agentTimeout} milliseconds)
+         */
+        CompletableFuture<ActionMessage> requestAction(RequestActionMessage percept) {
+            var futureAction = expectAction(percept);
+            sendMessage(percept);
+            return futureAction;
+        }
+
+        /**
+         * Assigns a new action id and deadline to the percept, without sending it.
+         * @param percept the step percept to forward
+         * @return the action that will be received by the agent (or {@link Actions#NO_ACTION} if none was received
+         * within {@link #agentTimeout} milliseconds)
          */
-        ActionMessage requestAction(RequestActionMessage percept) {
+        private CompletableFuture<ActionMessage> expectAction(RequestActionMessage percept) {
             long id = messageCounter.getAndIncrement();
             percept.updateIdAndDeadline(id, System.currentTimeMillis() + agentTimeout);
             CompletableFuture<JSONObject> futureAction = new CompletableFuture<>();
             futureActions.put(id, futureAction);
-            sendMessage(percept);
-            try {
-                // wait for action to be received
-                JSONObject json = futureAction.get(agentTimeout, TimeUnit.MILLISECONDS);
-                Message msg = Message.buildFromJson(json);
-                if(msg instanceof ActionMessage){
-                    return (ActionMessage) msg;
+            return futureAction.completeOnTimeout(null, agentTimeout, TimeUnit.MILLISECONDS).thenApply(json -> {
+                futureActions.remove(id);
+                if (json == null) {
+                    Log.log(Log.Level.NORMAL, "No valid action available in time for agent " + name + ".");
                 }
-            } catch (InterruptedException | ExecutionException e) {
-                Log.log(Log.Level.ERROR, "Interrupted while waiting for action.");
-            } catch (TimeoutException e) {
-                Log.log(Log.Level.NORMAL, "No valid action available in time for agent " + name + ".");
-            }
-            return new ActionMessage(Actions.NO_ACTION, id, new ArrayList<>());
+                else if (Message.buildFromJson(json) instanceof ActionMessage action) {
+                    return action;
+                }
+                return new ActionMessage(Actions.NO_ACTION, id, new ArrayList<>());
+            });
         }
 
         /**
@@ -207,61 +256,17 @@ class AgentManager {
         }
 
         /**
-         * Sets a new endpoint for sending and receiving messages. If a socket is already present, it is replaced and closed.
-         * @param newSocket the new socket to use for this agent
+         * Sets a new connection for sending and receiving messages. If the agent was already connected,
+         * it is removed from the old connection (which is closed if no other agents use it).
+         * @param newConnection the new connection to use for this agent
          */
-        private void handleNewConnection(Socket newSocket){
-            // potentially close old socket
-            if (sendThread != null) sendThread.interrupt();
-            if (receiveThread != null) receiveThread.interrupt();
-            if (socket != null) try { socket.close(); } catch (IOException ignored) {}
-            // set new socket and open new threads
-            socket = newSocket;
+        private synchronized void handleNewConnection(Connection newConnection){
+            var oldConnection = connection;
+            connection = newConnection;
             sendQueue.clear();
             // resend sim start message if available
-            if(lastSimStartMessage != null) sendQueue.addFirst(lastSimStartMessage.toJson());
-            sendThread = new Thread(this::send);
-            sendThread.start();
-            receiveThread = new Thread(this::receive);
-            receiveThread.start();
-        }
-
-        /**
-         * Reads JSON objects (0-terminated) from the socket. If any "packet" is bigger than
-         * {@link #maxPacketLength}, the read bytes are immediately discarded until the next 0 byte.
-         */
-        private void receive() {
-            InputStream in;
-            try {
-                in = new BufferedInputStream(socket.getInputStream());
-                var buffer = new ByteArrayOutputStream(maxPacketLength);
-                var readBytes = 0;
-                var skipping = false;
-                while (!disconnecting){
-                    var b = in.read();
-                    if (!skipping && b != 0) buffer.write(b);
-                    if(b == -1) break; // stream ended
-                    if (b == 0){
-                        if (skipping){
-                            skipping = false; // new packet next up
-                        }
-                        else {
-                            // json object complete
-                            JSONObject json = new JSONObject(new String(buffer.toByteArray()));
-                            handleReceivedMessage(json);
-                            buffer = new ByteArrayOutputStream();
-                            readBytes = 0;
-                        }
-                    }
-                    if (readBytes++ >= maxPacketLength){
-                        buffer = new ByteArrayOutputStream();
-                        readBytes = 0;
-                        skipping = true;
-                    }
-                }
-            } catch (IOException | JSONException e) {
-                Log.log(Log.Level.ERROR, "Error receiving json object. Stop receiving.");
-            }
+            if(lastSimStartMessage != null) sendQueue.addFirst(lastSimStartMessage);
+            if (oldConnection != null) oldConnection.detach(this);
         }
 
         /**
@@ -278,8 +283,12 @@ class AgentManager {
             if(message instanceof ActionMessage){
                 ActionMessage action = (ActionMessage) message;
                 long actionID = action.getId();
-                if(actionID != -1 && futureActions.containsKey(actionID)){
-                    futureActions.get(actionID).complete(json);
+                var futureAction = futureActions.get(actionID);
+                if(actionID != -1 && futureAction != null){
+                    futureAction.complete(json);
+                }
+                else if (actionID >= 0 && actionID < messageCounter.get()) {
+                    // the action came too late
                 }
                 else Log.log(Log.Level.ERROR, "Invalid action id " + actionID + " from " + name);
             }
@@ -289,59 +298,225 @@ class AgentManager {
         }
 
         /**
-         * Sends all messages from {@link #sendQueue}, blocks if it is empty.
+         * Puts the given message into the send queue as soon as possible.
+         * @param message the message to send
+         */
+        private void sendMessage(Message message){
+            queueMessage(message);
+            var connection = this.connection;
+            if (connection != null) connection.schedule(List.of(this));
+        }
+
+        /**
+         * Puts the given message into the send queue without notifying the connection.
+         * @param message the message to send
+         */
+        private void queueMessage(Message message){
+            while (sendQueue.size() > sendBufferSize)
+                sendQueue.poll();
+
+            try {
+                sendQueue.put(message);
+            } catch (InterruptedException e) {
+                Log.log(Log.Level.ERROR, "Interrupted while trying to put message into queue.");
+            }
+        }
+    }
+
+    /**
+     * A socket used by one or (if multiplexed) multiple agents of the same team.
+     * Each connection has one thread for sending and one for receiving messages.
+     * If the connection is batched, messages that are sent at the same time (e.g. the request-action messages
+     * of one step) are combined into one {@link BatchMessage}.
+     */
+    private class Connection {
+
+        private final Socket socket;
+        private final boolean multiplexed;
+        private final boolean batch;
+        private final WireCodec codec;
+        private final boolean deltas;
+        private final Map<String, AgentProxy> agents = new ConcurrentHashMap<>();
+        private Thread sendThread;
+        private Thread receiveThread;
+        private volatile boolean closed = false;
+
+        /**
+         * Groups of agents which have messages to send together (an empty group marks the end of the connection).
+         */
+        private final LinkedBlockingQueue<List<AgentProxy>> pending = new LinkedBlockingQueue<>();
+
+        // only used by the send thread
+        private final Map<AgentProxy, RequestActionMessage> lastPercepts = new HashMap<>();
+        private final Map<AgentProxy, Integer> sentDeltas = new HashMap<>();
+
+        private Connection(Socket socket, boolean multiplexed, boolean batch, WireCodec codec, boolean deltas) {
+            this.socket = socket;
+            this.multiplexed = multiplexed;
+            this.batch = batch;
+            this.codec = codec;
+            this.deltas = deltas;
+        }
+
+        /**
+         * Lets the agent use this connection.
+         */
+        private void attach(AgentProxy agent) {
+            agents.put(agent.name, agent);
+            agent.handleNewConnection(this);
+        }
+
+        /**
+         * Removes the agent from this connection (which is closed if no other agent uses it).
+         */
+        private void detach(AgentProxy agent) {
+            agents.remove(agent.name);
+            if (agents.isEmpty()) close();
+        }
+
+        private void start() {
+            agents.values().forEach(agent -> schedule(List.of(agent))); // e.g. sim start messages to resend
+            sendThread = new Thread(this::send);
+            sendThread.start();
+            receiveThread = new Thread(this::receive);
+            receiveThread.start();
+        }
+
+        /**
+         * Notifies the send thread that each of the agents has a new message to send.
+         * @param group the agents whose messages are sent together
+         */
+        private void schedule(List<AgentProxy> group) {
+            if (!closed) pending.add(group);
+        }
+
+        /**
+         * Sends the request-action messages of multiple agents of this connection together.
+         * @param percepts mapping from agents to their percepts
+         * @return the actions of all agents (by name), each of which is {@link Actions#NO_ACTION} if it was not
+         * received within {@link #agentTimeout} milliseconds
+         */
+        private CompletableFuture<Map<String, ActionMessage>> requestActions(
+                Map<AgentProxy, RequestActionMessage> percepts) {
+            Map<String, CompletableFuture<ActionMessage>> futureActions = new HashMap<>();
+            percepts.forEach((agent, percept) -> {
+                futureActions.put(agent.name, agent.expectAction(percept));
+                agent.queueMessage(percept);
+            });
+            schedule(List.copyOf(percepts.keySet()));
+            return CompletableFuture.allOf(futureActions.values().toArray(CompletableFuture[]::new)).thenApply(v -> {
+                Map<String, ActionMessage> actions = new HashMap<>();
+                futureActions.forEach((agName, futureAction) -> actions.put(agName, futureAction.join()));
+                return actions;
+            });
+        }
+
+        /**
+         * Reads messages from the socket with the negotiated {@link WireCodec}. If any "packet" is bigger than
+         * {@link #maxPacketLength}, it is skipped. Batches are accepted on any multiplexed connection.
+         */
+        private void receive() {
+            try {
+                var in = new FrameInputStream(socket.getInputStream());
+                while (!disconnecting){
+                    var json = codec.read(in, maxPacketLength);
+                    if (json == null) continue;
+                    if (multiplexed && Message.TYPE_BATCH.equals(json.optString("type"))
+                            && Message.buildFromJson(json) instanceof BatchMessage batchMessage)
+                        batchMessage.getMessages().forEach(this::dispatch);
+                    else dispatch(json);
+                }
+            } catch (EOFException ignored) { // stream ended
+            } catch (IOException | JSONException e) {
+                Log.log(Log.Level.ERROR, "Error receiving json object. Stop receiving.");
+            }
+            if (!disconnecting) close();
+        }
+
+        /**
+         * Hands a received message to the agent it belongs to.
+         */
+        private void dispatch(JSONObject json) {
+            var agent = multiplexed? agents.get(json.optString(Message.KEY_AGENT))
+                    : agents.values().stream().findAny().orElse(null);
+            if (agent != null) agent.handleReceivedMessage(json);
+            else Log.log(Log.Level.ERROR, "Received message for unknown agent " + json.opt(Message.KEY_AGENT));
+        }
+
+        /**
+         * Sends the messages of all agents that are {@link #pending}, blocks if there are none.
+         * If deltas were negotiated, request-action messages only contain the changes relative to the last one
+         * actually sent to the same agent on this connection, except for each {@link #perceptResync}-th one and
+         * the first one after a sim-start or sim-end.
          */
         private void send() {
             while (true) {
-                if (disconnecting && sendQueue.isEmpty()) { // we can stop when everything is sent (e.g. the bye message)
-                    break;
-                }
                 try {
-                    var osw = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
-                    var msg = sendQueue.take();
-                    osw.write(msg.toString());
-                    osw.write(0);
-                    osw.flush();
+                    var out = socket.getOutputStream();
+                    var group = pending.take();
+                    if (group.isEmpty()) break; // everything is sent (e.g. the bye messages)
+                    var messages = new ArrayList<JSONObject>(group.size());
+                    for (var agent : group) {
+                        if (agent.connection != this) continue;
+                        var message = agent.sendQueue.poll();
+                        if (message == null) continue; // dropped because the queue was full
+                        var json = toWireJson(agent, message);
+                        if (multiplexed) json.put(Message.KEY_AGENT, agent.name);
+                        messages.add(json);
+                    }
+                    if (batch && messages.size() > 1) codec.write(out, new BatchMessage(messages).toJson());
+                    else for (var json : messages) codec.write(out, json);
                 } catch (IOException | InterruptedException e){
-                    Log.log(Log.Level.DEBUG, name + ": Error writing to socket. Stop sending now.");
+                    Log.log(Log.Level.DEBUG, agents.keySet() + ": Error writing to socket. Stop sending now.");
+                    if (!disconnecting) close();
                     break;
                 }
             }
         }
 
         /**
-         * Closes socket and stops threads (if they exist).
+         * @return the JSON to send for the agent's message (as a delta if possible)
          */
-        private void close() {
-            sendMessage(new ByeMessage(System.currentTimeMillis()));
+        private JSONObject toWireJson(AgentProxy agent, Message message) {
+            if (message instanceof RequestActionMessage percept) {
+                var lastPercept = lastPercepts.put(agent, percept);
+                int deltaCount = sentDeltas.getOrDefault(agent, 0);
+                if (deltas && lastPercept != null && deltaCount < perceptResync) {
+                    sentDeltas.put(agent, deltaCount + 1);
+                    return percept.toDeltaWireJson(lastPercept);
+                }
+                sentDeltas.put(agent, 0);
+                return percept.toWireJson();
+            }
+            lastPercepts.remove(agent);
+            return message.toWireJson();
+        }
+
+        /**
+         * Sends all remaining messages (but waits at most a few seconds), then closes the connection.
+         */
+        private void finish() {
+            pending.add(List.of());
             try {
                 if(sendThread != null)
                     sendThread.join(5000); // give bye-message some time to be sent (but not too much)
             } catch (InterruptedException e) {
                 Log.log(Log.Level.ERROR, "Interrupted while waiting for disconnection.");
             }
-            if (sendThread != null) sendThread.interrupt();
-            if (receiveThread != null) receiveThread.interrupt();
-            if (socket != null) {
-                try {
-                    socket.close();
-                } catch (IOException ignored) {}
-            }
+            close();
         }
 
         /**
-         * Puts the given message into the send queue as soon as possible.
-         * @param message the message document to send
+         * Closes socket and stops threads (if they exist).
          */
-        private void sendMessage(Message message){
-            while (sendQueue.size() > sendBufferSize)
-                sendQueue.poll();
-
+        private void close() {
+            closed = true;
+            pending.clear();
+            if (sendThread != null) sendThread.interrupt();
+            if (receiveThread != null) receiveThread.interrupt();
             try {
-                sendQueue.put(message.toJson());
-            } catch (InterruptedException e) {
-                Log.log(Log.Level.ERROR, "Interrupted while trying to put message into queue.");
-            }
+                socket.close();
+            } catch (IOException ignored) {}
         }
     }
 }
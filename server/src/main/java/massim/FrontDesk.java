@@ -6,6 +6,8 @@ import java.io.InputStream;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -16,6 +18,8 @@ import massim.protocol.messages.AuthResponseMessage;
 import massim.protocol.messages.Message;
 import massim.protocol.messages.StatusRequestMessage;
 import massim.protocol.messages.StatusResponseMessage;
+import massim.protocol.util.WireCodec;
+import massim.protocol.util.WireFormat;
 import massim.util.Log;
 
 /**
@@ -80,7 +84,23 @@ class FrontDesk {
      * @param result whether the authentication was successful
      */
     private void sendAuthResponse(Socket s, String result) {
-        sendMessage(s, new AuthResponseMessage(System.currentTimeMillis(), result));
+        sendAuthResponse(s, result, null, null, false, null, false);
+    }
+
+    /**
+     * Creates and sends an auth-response message on the given socket.
+     * @param s the socket to send on
+     * @param result whether the authentication was successful
+     * @param protocol the wire format used from now on (null if the client did not request one)
+     * @param compression the compression used from now on (null if none)
+     * @param deltas whether percepts are sent as deltas from now on
+     * @param multiplex the further agents authenticated for the connection (null if it is not multiplexed)
+     * @param batch whether messages for the agents of the (multiplexed) connection are sent in batches
+     */
+    private void sendAuthResponse(Socket s, String result, String protocol, String compression, boolean deltas,
+                                  List<String> multiplex, boolean batch) {
+        sendMessage(s, new AuthResponseMessage(System.currentTimeMillis(), result, protocol, compression, deltas,
+                multiplex, batch));
     }
 
     private void sendStatusResponse(Socket s) {
@@ -131,8 +151,41 @@ class FrontDesk {
                     // check credentials and act accordingly
                     if (agentManager.auth(auth.getUsername(), auth.getPassword())) {
                         Log.log(Log.Level.NORMAL, auth.getUsername() + " authentication successful");
-                        sendAuthResponse(s, AuthResponseMessage.OK);
-                        agentManager.handleNewConnection(s, auth.getUsername());
+                        var format = WireFormat.JSON;
+                        if (auth.getProtocol() != null) {
+                            format = WireFormat.fromName(auth.getProtocol());
+                            if (format == null) {
+                                Log.log(Log.Level.ERROR, "Unknown protocol " + auth.getProtocol() + " requested by "
+                                        + auth.getUsername() + ". Using JSON.");
+                                format = WireFormat.JSON;
+                            }
+                        }
+                        var compressed = WireCodec.DEFLATE.equals(auth.getCompression());
+                        if (auth.getCompression() != null && !compressed)
+                            Log.log(Log.Level.ERROR, "Unknown compression " + auth.getCompression() + " requested by "
+                                    + auth.getUsername() + ". Not compressing.");
+                        var deltas = auth.isDeltas() && agentManager.isPerceptDeltasEnabled();
+                        List<String> multiplexed = null;
+                        if (auth.getMultiplex() != null) {
+                            multiplexed = new ArrayList<>();
+                            for (var entry : auth.getMultiplex().entrySet()) {
+                                if (!entry.getKey().equals(auth.getUsername())
+                                        && agentManager.authTeammate(auth.getUsername(), entry.getKey(), entry.getValue()))
+                                    multiplexed.add(entry.getKey());
+                                else
+                                    Log.log(Log.Level.ERROR, "Invalid multiplexed authentication for "
+                                            + entry.getKey() + " from " + auth.getUsername());
+                            }
+                            Log.log(Log.Level.NORMAL, auth.getUsername() + " multiplexes " + multiplexed);
+                        }
+                        var batch = auth.isBatch() && multiplexed != null;
+                        sendAuthResponse(s, AuthResponseMessage.OK, auth.getProtocol() != null? format.getName() : null,
+                                compressed? WireCodec.DEFLATE : null, deltas, multiplexed, batch);
+                        var agents = new ArrayList<String>();
+                        agents.add(auth.getUsername());
+                        if (multiplexed != null) agents.addAll(multiplexed);
+                        agentManager.handleNewConnection(s, agents, multiplexed != null, batch,
+                                new WireCodec(format, compressed), deltas);
                     } else {
                         Log.log(Log.Level.ERROR, "Got invalid authentication from: " + s.getInetAddress().getHostAddress());
                         sendAuthResponse(s, AuthResponseMessage.FAIL);
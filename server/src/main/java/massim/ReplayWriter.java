@@ -3,10 +3,15 @@ package massim;
 import massim.util.Log;
 import org.json.JSONObject;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 public class ReplayWriter {
 
@@ -15,46 +20,70 @@ public class ReplayWriter {
     private String replayPath;
 
     private int lastGroup = -1;
-    private JSONObject cache = new JSONObject();
+
+    /**
+     * The encoded (UTF-8) states of the current group of steps. Each state is encoded only once, even though
+     * the group's file is rewritten with each step.
+     */
+    private Map<String, byte[]> cache = new LinkedHashMap<>();
 
     public ReplayWriter(String replayPath) {
         this.replayPath = replayPath;
     }
 
     public void updateState(String simId, String startTime, JSONObject world) {
-        if (!isStatic(world)) {
-            int step = world.optInt("step");
+        if(world == null) {
+            Log.log(Log.Level.ERROR, "No JSON object to write.");
+            return;
+        }
+        updateState(simId, startTime, world.has("grid"), world.optInt("step"), world.toString());
+    }
+
+    /**
+     * Saves an already encoded world state.
+     * @param isStatic whether the state contains the static data (otherwise it is the state of one step)
+     * @param step the step of the state (if it is not static)
+     * @param encodedWorld the world state as a JSON string
+     */
+    public void updateState(String simId, String startTime, boolean isStatic, int step, String encodedWorld) {
+        if (!isStatic) {
             int group = step / GROUP_SIZE;
             String stepStr = String.valueOf(step);
 
-            if (lastGroup != group || cache.has(stepStr)) cache = new JSONObject();
-            cache.put(stepStr, world);
-            write(startTime, simId, String.valueOf(group * GROUP_SIZE), cache);
+            if (lastGroup != group || cache.containsKey(stepStr)) cache = new LinkedHashMap<>();
+            cache.put(stepStr, encodedWorld.getBytes(StandardCharsets.UTF_8));
+            write(startTime, simId, String.valueOf(group * GROUP_SIZE), out -> {
+                out.write('{');
+                var first = true;
+                for (var entry : cache.entrySet()) {
+                    if (!first) out.write(',');
+                    first = false;
+                    out.write(JSONObject.quote(entry.getKey()).getBytes(StandardCharsets.UTF_8));
+                    out.write(':');
+                    out.write(entry.getValue());
+                }
+                out.write('}');
+            });
 
             lastGroup = group;
         } else {
-            write(startTime, simId, "static", world);
+            var bytes = encodedWorld.getBytes(StandardCharsets.UTF_8);
+            write(startTime, simId, "static", out -> out.write(bytes));
         }
     }
 
-    private boolean isStatic(JSONObject world) {
-        return world.has("grid");
+    private interface Content {
+        void writeTo(OutputStream out) throws IOException;
     }
 
-    private void write(String startTime, String simId, String name, JSONObject json) {
-        if(json == null) {
-            Log.log(Log.Level.ERROR, "No JSON object to write.");
-            return;
-        }
+    private void write(String startTime, String simId, String name, Content content) {
         String prefix = startTime + "-" + simId;
         File file = Paths.get(this.replayPath, prefix, name + ".json").toFile();
         File dir = file.getParentFile();
         if (!dir.exists()) dir.mkdirs();
 
-        try {
-            FileWriter writer = new FileWriter(file);
-            json.write(writer);
-            writer.close();
+        try (var out = new BufferedOutputStream(new FileOutputStream(file))) {
+            content.writeTo(out);
         } catch (IOException e) {
             e.printStackTrace();
         }
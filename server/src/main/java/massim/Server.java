@@ -37,6 +37,7 @@ public class Server {
     private AgentManager agentManager;
     private Monitor monitor;
     private ReplayWriter replayWriter;
+    private long lastStatusUpdate = 0;
 
     /**
      * whether server should stop after the next match (random mode)
@@ -173,7 +174,7 @@ public class Server {
         inputManager.start();
 
         // setup backend
-        agentManager = new AgentManager(config.teams, config.agentTimeout, config.maxPacketLength);
+        agentManager = new AgentManager(config.teams, config.agentTimeout, config.maxPacketLength, config.perceptResync);
         try {
             frontDesk = new FrontDesk(agentManager, config);
             frontDesk.open();
@@ -309,7 +310,7 @@ public class Server {
             // handle initial state
             var initialPercepts = sim.init(steps, simConfig, matchTeams);
             handleSimState(sim.getName(), startTime, sim.getStaticData());
-            handleSimState(sim.getName(), startTime, sim.getSnapshot());
+            if (isSnapshotNeeded()) handleSimState(sim.getName(), startTime, sim.getSnapshot());
             agentManager.handleInitialPercepts(initialPercepts);
 
             // handle steps
@@ -319,8 +320,8 @@ public class Server {
                 var percepts = sim.preStep(i);
                 var actions = agentManager.requestActions(percepts);
                 sim.step(i, actions); // execute step with agent actions
-                handleSimState(sim.getName(), startTime, sim.getSnapshot());
-                if (monitor != null) monitor.updateStatus(sim.getStatusSnapshot());
+                if (isSnapshotNeeded()) handleSimState(sim.getName(), startTime, sim.getSnapshot());
+                if (isStatusUpdateDue(i == steps - 1)) monitor.updateStatus(sim.getStatusSnapshot());
             }
 
             // handle final state
@@ -380,6 +381,28 @@ public class Server {
         Log.log(Log.Level.NORMAL, "Command received: " + command[0]);
     }
 
+    /**
+     * @return whether a snapshot of the world state would be used by anyone (i.e. a replay is written or
+     * the monitor is watched)
+     */
+    private boolean isSnapshotNeeded() {
+        return replayWriter != null || monitor != null && monitor.hasMonitorClients();
+    }
+
+    /**
+     * Checks if the status page should be updated now, i.e. someone is watching it and the last update was at
+     * least {@link ServerConfig#statusUpdateInterval} ms ago.
+     * @param lastStep whether the last step of a simulation was just completed (always updated)
+     * @return true if a new status snapshot should be sent
+     */
+    private boolean isStatusUpdateDue(boolean lastStep) {
+        if (monitor == null || !monitor.hasStatusClients()) return false;
+        var now = System.currentTimeMillis();
+        if (!lastStep && now - lastStatusUpdate < config.statusUpdateInterval) return false;
+        lastStatusUpdate = now;
+        return true;
+    }
+
     /**
      * Handles snapshots of the world state, i.e. notifies monitor and saves replays (if configured).
      * @param simId the ID of the current sim
@@ -387,8 +410,17 @@ public class Server {
      * @param world the world state
      */
     private void handleSimState(String simId, String startTime, JSONObject world) {
-        if (monitor != null) monitor.updateState(world);
-        if (replayWriter != null) replayWriter.updateState(simId, startTime, world);
+        if (monitor == null && replayWriter == null) return;
+        if (world == null) {
+            Log.log(Log.Level.ERROR, "No world state to handle.");
+            return;
+        }
+        // encode the state only once for all consumers
+        var isStatic = world.has("grid");
+        var encodedWorld = world.toString();
+        if (monitor != null) monitor.updateState(encodedWorld, isStatic);
+        if (replayWriter != null)
+            replayWriter.updateState(simId, startTime, isStatic, world.optInt("step"), encodedWorld);
     }
 
     /**
@@ -424,10 +456,14 @@ public class Server {
         Log.log(Log.Level.NORMAL, "Configuring result path: " + config.resultPath);
         config.maxPacketLength = serverJSON.getInt("maxPacketLength");
         Log.log(Log.Level.NORMAL, "Configuring max packet length: " + config.maxPacketLength);
-        config.replayPath = serverJSON.getString("replayPath");
+        config.perceptResync = serverJSON.optInt("perceptResync", config.perceptResync);
+        Log.log(Log.Level.NORMAL, "Configuring percept resync: " + config.perceptResync);
+        config.replayPath = serverJSON.optString("replayPath", null);
         Log.log(Log.Level.NORMAL, "Configuring replay path: " + config.replayPath);
         config.waitBetweenSimulations = serverJSON.optInt("waitBetweenSimulations");
         Log.log(Log.Level.NORMAL, "Configuring wait time: " + config.waitBetweenSimulations);
+        config.statusUpdateInterval = serverJSON.optLong("statusUpdateInterval", config.statusUpdateInterval);
+        Log.log(Log.Level.NORMAL, "Configuring status update interval: " + config.statusUpdateInterval);
 
         // parse matches
         JSONArray matchJSON = conf.getJSONArray("match");
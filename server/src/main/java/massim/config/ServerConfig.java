@@ -42,6 +42,11 @@ public class ServerConfig {
      */
     public int maxPacketLength;
 
+    /**
+     * The number of percept deltas after which a complete percept is sent to agents requesting deltas (0 disables deltas).
+     */
+    public int perceptResync = 20;
+
     /**
      * The path were replays should be saved. If null, replay won't be saved.
      */
@@ -52,6 +57,11 @@ public class ServerConfig {
      */
     public int monitorPort;
 
+    /**
+     * The minimum amount of ms between two updates of the status page (0 to update after each step).
+     */
+    public long statusUpdateInterval = 0;
+
     /**
      * The amount of ms to pause between simulations.
      */
@@ -0,0 +1,59 @@
+package massim.game;
+
+import massim.game.environment.Grid;
+import massim.game.environment.positionable.Attachable;
+import massim.game.environment.positionable.Positionable;
+import massim.game.environment.zones.ZoneType;
+import massim.protocol.data.Position;
+import massim.protocol.data.Thing;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Contents of all cells seen by any agent in one step. Each cell is looked up only once, even if many agents
+ * see it; the percept of each agent then only needs to translate the cached contents relative to its position.
+ * Must be discarded as soon as anything in the grid changes.
+ */
+class CellCache {
+
+    /**
+     * @param thing the thing itself (to exclude an agent from its own attached things)
+     * @param type percept type
+     * @param details percept details
+     * @param attached whether the thing is attached to any entity
+     */
+    record Content(Positionable thing, Position position, String type, String details, boolean attached) {
+
+        Thing toPercept(Position origin) {
+            var relative = position.relativeTo(origin);
+            return new Thing(relative.x, relative.y, type, details);
+        }
+    }
+
+    record Cell(List<Content> contents, boolean goalZone, boolean roleZone) {}
+
+    private final Grid grid;
+    private final Map<Position, Cell> cells = new HashMap<>();
+
+    CellCache(Grid grid) {
+        this.grid = grid;
+    }
+
+    Cell get(Position pos) {
+        return cells.computeIfAbsent(pos, this::load);
+    }
+
+    private Cell load(Position pos) {
+        var everything = grid.getEverythingAt(pos);
+        var contents = new Content[everything.size()];
+        for (var i = 0; i < contents.length; i++) {
+            var thing = everything.get(i);
+            var percept = thing.toPercept(thing.getPosition());
+            contents[i] = new Content(thing, thing.getPosition(), percept.type, percept.details,
+                    thing instanceof Attachable a && a.isAttachedToAnotherEntity());
+        }
+        return new Cell(List.of(contents), grid.isInZone(ZoneType.GOAL, pos), grid.isInZone(ZoneType.ROLE, pos));
+    }
+}
@@ -4,12 +4,12 @@ import massim.config.TeamConfig;
 import massim.game.environment.ClearEvent;
 import massim.game.environment.Grid;
 import massim.game.environment.Task;
+import massim.game.environment.TaskRegistry;
 import massim.game.environment.positionable.*;
 import massim.game.environment.zones.Zone;
 import massim.game.environment.zones.ZoneType;
 import massim.game.norms.Norm;
 import massim.game.norms.Officer;
-import massim.game.norms.Officer.Record;
 import massim.protocol.data.Position;
 import massim.protocol.data.Role;
 import massim.protocol.data.Thing;
@@ -49,7 +49,7 @@ public class GameState {
     private final Officer officer;
 
     // dynamic env. things
-    private final Map<String, Task> tasks = new HashMap<>();
+    private final TaskRegistry tasks = new TaskRegistry();
     private final Set<ClearEvent> clearEvents = new HashSet<>();
 
     // config parameters
@@ -276,7 +276,7 @@ public class GameState {
 
     Map<String, SimStartMessage> getInitialPercepts(int steps) {
         Map<String, SimStartMessage> result = new HashMap<>();
-        for (Entity e: this.grid.entities().getAll()) {
+        for (Entity e: this.grid.entities().view()) {
             result.put(e.getAgentName(),
                     new InitialPercept(e.getAgentName(), e.getTeamName(), teamSize, steps, this.grid.entities().getRoles()));
         }
@@ -290,11 +290,11 @@ public class GameState {
         this.grid.deleteMarkers();
 
         // handle norms before everything else
-        this.officer.regulateNorms(step, this.grid.entities().getAll());
+        this.officer.regulateNorms(step, this.grid.entities());
 
         this.createNewTasks();
 
-        this.grid.entities().getAll().forEach(Entity::preStep);
+        this.grid.entities().preStep();
 
         //handle (map) events
         if (RNG.nextInt(100) < eventChance) {
@@ -325,10 +325,7 @@ public class GameState {
     }
 
     private void createNewTasks() {
-        var activeTasks = tasks.values().stream()
-                .filter(t -> !t.isCompleted())
-                .filter(t -> this.step <= t.getDeadline())
-                .count();
+        var activeTasks = tasks.countActive(this.step);
         var tasksMissing = this.concurrentTasks - activeTasks;
         for (var i = 0; i < tasksMissing; i++)
             this.createRandomTask();
@@ -354,43 +351,37 @@ public class GameState {
 
     Map<String, RequestActionMessage> getStepPercepts(){
         Map<String, RequestActionMessage> result = new HashMap<>();
-        var activeTasks = tasks.values().stream()
-                .filter(t -> !t.isCompleted())
-                .filter(t -> step <= t.getDeadline())
-                .map(Task::toPercept)
-                .collect(Collectors.toSet());
         var allNorms = officer.getApprovedNorms(this.step).stream()
                 .filter(n -> n.toAnnounce(this.step) || n.isActive(this.step))
                 .map(Norm::toPercept)
                 .collect(Collectors.toSet());
-        List<Record> records = officer.getArchive(this.step);
+        var shared = StepPercept.Shared.of(tasks.getPercepts(step), allNorms);
+
+        var cells = new CellCache(this.grid);
 
-        for (var entity : this.grid.entities().getAll()) {
+        for (var entity : this.grid.entities().view()) {
             var agentPos = entity.getPosition();
             var visibleThings = new HashSet<Thing>();
             var attachedThings = new ArrayList<Position>();
             var goalZones = new ArrayList<Position>();
             var roleZones = new ArrayList<Position>();
             for (var currentPos: agentPos.spanArea(entity.getVision())){
-                for (var thing : this.grid.getEverythingAt(currentPos)) {
-                    visibleThings.add(thing.toPercept(agentPos));
-                    if (thing != entity && thing instanceof Attachable a && a.isAttachedToAnotherEntity()){
-                        attachedThings.add(thing.getPosition().relativeTo(agentPos));
+                var cell = cells.get(currentPos);
+                for (var content : cell.contents()) {
+                    visibleThings.add(content.toPercept(agentPos));
+                    if (content.thing() != entity && content.attached()){
+                        attachedThings.add(content.position().relativeTo(agentPos));
                     }
                 }
-                if (this.grid.isInZone(ZoneType.GOAL, currentPos)) goalZones.add(currentPos.relativeTo(agentPos));
-                if (this.grid.isInZone(ZoneType.ROLE, currentPos)) roleZones.add(currentPos.relativeTo(agentPos));
+                if (cell.goalZone()) goalZones.add(currentPos.relativeTo(agentPos));
+                if (cell.roleZone()) roleZones.add(currentPos.relativeTo(agentPos));
             }
-            List<String> punishment = records.stream()
-                                                .filter(p -> p.entity().getAgentName().equals(entity.getAgentName()))
-                                                .map(Record::norm)
-                                                .collect(Collectors.toList());
+            List<String> punishment = officer.getViolations(this.step, entity.getAgentName());
             result.put(entity.getAgentName(), new StepPercept(
                     step,
                     teams.get(entity.getTeamName()).getScore(),
                     visibleThings,
-                    activeTasks,
-                    allNorms,
+                    shared,
                     entity.getLastAction(),
                     entity.getLastActionParams(),
                     entity.getLastActionResult(),
@@ -416,7 +407,7 @@ public class GameState {
         for (int i = 0; i < teamsSorted.size(); i++) {
             rankings.put(teamsSorted.get(i), i + 1);
         }
-        for (Entity e: this.grid.entities().getAll()) {
+        for (Entity e: this.grid.entities().view()) {
             var team = teams.get(e.getTeamName());
             result.put(e.getAgentName(), new SimEndMessage(team.getScore(), rankings.get(team)));
         }
@@ -548,6 +539,7 @@ public class GameState {
         });
         teams.get(e.getTeamName()).addScore(task.getReward());
         task.completeOnce();
+        tasks.checkCompleted(task);
 
         this.grid.moveGoalZone(e.getPosition());
 
@@ -628,7 +620,7 @@ public class GameState {
         int size = RNG.betweenClosed(taskSizeBounds);
         int iterations = RNG.betweenClosed(taskIterations);
         if (size < 1) return;
-        var name = "task" + tasks.values().size();
+        var name = "task" + tasks.size();
         var requirements = new HashMap<Position, String>();
         var typeList = new ArrayList<>(this.grid.blocks().getTypes());
         var lastPosition = Position.of(0, 1);
@@ -649,7 +641,7 @@ public class GameState {
     Task createTask(String name, int duration, int iterations, Map<Position, String> requirements) {
         if (requirements.size() == 0) return null;
         Task t = new Task(name, step + duration, iterations, requirements);
-        this.tasks.put(t.getName(), t);
+        this.tasks.add(t);
         Log.log(Log.Level.NORMAL, "Task created: " + t);
         return t;
     }
@@ -667,7 +659,7 @@ public class GameState {
         snapshot.put("step", step);
         JSONArray entityArr = new JSONArray();
         snapshot.put("entities", entityArr);
-        for (Entity o : this.grid.entities().getAll()) {
+        for (Entity o : this.grid.entities().view()) {
             JSONObject obj = new JSONObject();
             obj.put("name", o.getAgentName());
             obj.put("team", o.getTeamName());
@@ -695,25 +687,22 @@ public class GameState {
         JSONArray punishmentArr = new JSONArray();
         snapshot.put("violations", punishmentArr);
 
-        for (Entity entity : this.grid.entities().getAll()) {
+        for (Entity entity : this.grid.entities().view()) {
             entities.put(entity.toJSON()
                                .put("events", this.stepEvents.get(entity.getAgentName())));
         }
+        // most things do not change from step to step, so their JSON is reused
         for (Block block : this.grid.blocks().getAll()) {
-            blocks.put(block.toJSON());
+            blocks.put(block.getCachedJSON());
         }
         for (Dispenser dispenser : this.grid.dispensers().getAll()) {
-            dispensers.put(dispenser.toJSON());
+            dispensers.put(dispenser.getCachedJSON());
         }
         for (Obstacle obstacle : this.grid.obstacles().getAll()) {
-            obstacles.put(obstacle.toJSON());
+            obstacles.put(obstacle.getCachedJSON());
         }
 
-        this.tasks.values().stream()
-                .filter(t -> !t.isCompleted())
-                .filter(t -> step <= t.getDeadline())
-                .sorted(Comparator.comparing(Task::getDeadline))
-                .forEach(t -> taskArr.put(t.toJSON()));
+        this.tasks.getActive(step).forEach(t -> taskArr.put(t.toJSON()));
 
         snapshot.put("goalZones", new JSONArray(grid.getZones(ZoneType.GOAL).stream()
                 .map(Zone::toJSON).collect(Collectors.toList())));
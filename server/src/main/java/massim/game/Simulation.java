@@ -103,7 +103,7 @@ public class Simulation {
      * Executes all actions in random order.
      */
     private void handleActions(Map<String, ActionMessage> actions) {
-        var entities = new ArrayList<>(state.grid().entities().getAll());
+        var entities = new ArrayList<>(state.grid().entities().view());
         RNG.shuffle(entities);
 
         for (Entity entity : entities) {
@@ -0,0 +1,154 @@
+package massim.game.environment;
+
+import java.util.stream.IntStream;
+
+/**
+ * Cellular automaton for cave generation on a torus.
+ * Each row of the terrain is packed into longs (one bit per cell), so that the 8 neighbours of 64 cells
+ * can be counted at once with bitwise adders. Rows are processed in bands in parallel; since every generation
+ * only depends on the previous one, the result does not depend on the number of threads.
+ */
+final class CaveAutomaton {
+
+    /**
+     * below this number of cells, the parallel overhead is not worth it
+     */
+    private static final int PARALLEL_THRESHOLD = 128 * 128;
+
+    private final int dimX;
+    private final int dimY;
+    private final int words;
+    private final long lastWordMask;
+
+    private long[][] rows;
+    private long[][] next;
+    private final long[][] west;
+    private final long[][] east;
+
+    private CaveAutomaton(int dimX, int dimY) {
+        this.dimX = dimX;
+        this.dimY = dimY;
+        this.words = (dimX + 63) / 64;
+        this.lastWordMask = dimX % 64 == 0? -1L : (1L << (dimX % 64)) - 1;
+        this.rows = new long[dimY][words];
+        this.next = new long[dimY][words];
+        this.west = new long[dimY][words];
+        this.east = new long[dimY][words];
+    }
+
+    /**
+     * @param terrain the terrain indexed by [x][y], true for obstacles
+     */
+    static CaveAutomaton fromTerrain(boolean[][] terrain) {
+        var automaton = new CaveAutomaton(terrain.length, terrain[0].length);
+        for (var x = 0; x < automaton.dimX; x++) for (var y = 0; y < automaton.dimY; y++)
+            if (terrain[x][y]) automaton.rows[y][x >>> 6] |= 1L << x;
+        return automaton;
+    }
+
+    /**
+     * @return the terrain indexed by [x][y], true for obstacles
+     */
+    boolean[][] toTerrain() {
+        var terrain = new boolean[dimX][dimY];
+        for (var y = 0; y < dimY; y++) for (var x = 0; x < dimX; x++)
+            terrain[x][y] = (rows[y][x >>> 6] & (1L << x)) != 0;
+        return terrain;
+    }
+
+    /**
+     * Runs the given number of generations. An obstacle stays if it has at least destroyLimit obstacle neighbours,
+     * an empty cell becomes an obstacle if it has more than createLimit obstacle neighbours.
+     * @return this automaton
+     */
+    CaveAutomaton run(int iterations, int createLimit, int destroyLimit) {
+        var survive = ruleMask(destroyLimit);
+        var birth = ruleMask(createLimit + 1);
+        var parallel = dimX * dimY >= PARALLEL_THRESHOLD;
+        var bands = parallel? Math.min(dimY, Runtime.getRuntime().availableProcessors() * 4) : 1;
+        for (var it = 0; it < iterations; it++) {
+            forEachBand(bands, parallel, (from, to) -> {
+                for (var y = from; y < to; y++) {
+                    shiftWest(rows[y], west[y]);
+                    shiftEast(rows[y], east[y]);
+                }
+            });
+            forEachBand(bands, parallel, (from, to) -> {
+                for (var y = from; y < to; y++) step(y, survive, birth);
+            });
+            var tmp = rows;
+            rows = next;
+            next = tmp;
+        }
+        return this;
+    }
+
+    /**
+     * @return a bitmask where bit n is set iff n >= threshold (for n in 0..8)
+     */
+    private static int ruleMask(int threshold) {
+        var mask = 0;
+        for (var n = Math.max(threshold, 0); n <= 8; n++) mask |= 1 << n;
+        return mask;
+    }
+
+    private void step(int y, int survive, int birth) {
+        var up = Math.floorMod(y - 1, dimY);
+        var down = (y + 1) % dimY;
+        var result = next[y];
+        for (var w = 0; w < words; w++) {
+            // bit-sliced counter of obstacle neighbours (s3 s2 s1 s0)
+            long s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+            for (var in : new long[]{west[up][w], rows[up][w], east[up][w], west[y][w], east[y][w],
+                                     west[down][w], rows[down][w], east[down][w]}) {
+                var carry = s0 & in;
+                s0 ^= in;
+                var c2 = s1 & carry;
+                s1 ^= carry;
+                var c3 = s2 & c2;
+                s2 ^= c2;
+                s3 |= c3;
+            }
+            var alive = rows[y][w];
+            long survivors = 0, births = 0;
+            for (var n = 0; n <= 8; n++) {
+                if ((survive & (1 << n)) == 0 && (birth & (1 << n)) == 0) continue;
+                var count = ((n & 1) != 0? s0 : ~s0) & ((n & 2) != 0? s1 : ~s1)
+                        & ((n & 4) != 0? s2 : ~s2) & ((n & 8) != 0? s3 : ~s3);
+                if ((survive & (1 << n)) != 0) survivors |= count;
+                if ((birth & (1 << n)) != 0) births |= count;
+            }
+            result[w] = (alive & survivors) | (~alive & births);
+        }
+        result[words - 1] &= lastWordMask;
+    }
+
+    /**
+     * dst bit x = src bit (x - 1) wrapped, i.e. each cell sees its west neighbour
+     */
+    private void shiftWest(long[] src, long[] dst) {
+        for (var w = 0; w < words; w++)
+            dst[w] = (src[w] << 1) | (w > 0? src[w - 1] >>> 63 : 0);
+        dst[words - 1] &= lastWordMask;
+        dst[0] |= (src[(dimX - 1) >>> 6] >>> (dimX - 1)) & 1L;
+    }
+
+    /**
+     * dst bit x = src bit (x + 1) wrapped, i.e. each cell sees its east neighbour
+     */
+    private void shiftEast(long[] src, long[] dst) {
+        for (var w = 0; w < words; w++)
+            dst[w] = (src[w] >>> 1) | (w + 1 < words? src[w + 1] << 63 : 0);
+        dst[(dimX - 1) >>> 6] |= (src[0] & 1L) << (dimX - 1);
+    }
+
+    private interface RowRange {
+        void process(int from, int to);
+    }
+
+    private void forEachBand(int bands, boolean parallel, RowRange task) {
+        var stream = IntStream.range(0, bands);
+        if (parallel) stream = stream.parallel();
+        stream.forEach(band -> task.process(band * dimY / bands, (band + 1) * dimY / bands));
+    }
+}
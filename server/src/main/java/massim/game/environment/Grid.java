@@ -22,7 +22,7 @@ public class Grid {
     private final int attachLimit;
     private final double moveProbability;
 
-    private final AttachableHub attachables = new AttachableHub();
+    private final AttachableHub attachables;
     private final EntityHub entities = new EntityHub();
     private final BlockHub blocks = new BlockHub();
     private final ObstacleHub obstacles = new ObstacleHub();
@@ -33,19 +33,19 @@ public class Grid {
     private final ZoneList roleZones = new ZoneList();
 
     public Grid(JSONObject gridConf, int attachLimit) {
+        this.attachLimit = attachLimit;
+        this.dimX = gridConf.getInt("width");
+        this.dimY = gridConf.getInt("height");
+        Position.setGridDimensions(dimX, dimY);
 
+        this.attachables = new AttachableHub(dimX, dimY);
         Entity.setObservers(List.of(attachables, entities));
         Block.setObservers(List.of(attachables, blocks));
         Obstacle.setObservers(List.of(attachables, obstacles));
         Marker.setObservers(List.of(markers));
         Dispenser.setObservers(List.of(dispensers));
 
-        this.attachLimit = attachLimit;
-        this.dimX = gridConf.getInt("width");
-        this.dimY = gridConf.getInt("height");
-        Position.setGridDimensions(dimX, dimY);
-
-        GridBuilder.fromBitmap(gridConf.optString("file"), this);
+        GridBuilder.fromFile(gridConf.optString("file"), this);
         GridBuilder.addObstaclesFromConfig(gridConf.getJSONArray("instructions"), this);
 
         var goalConf = gridConf.getJSONObject("goals");
@@ -196,46 +196,31 @@ public class Grid {
         return newPositions;
     }
 
+    /**
+     * @return a free position chosen uniformly at random among all free positions or null if there is none
+     */
     public Position findRandomFreePosition() {
-        int x = RNG.nextInt(this.dimX);
-        int y = RNG.nextInt(this.dimY);
-        final int startX = x;
-        final int startY = y;
-        while (isBlocked(Position.of(x,y))) {
-            if (++x >= dimX) {
-                x = 0;
-                if (++y >= dimY) y = 0;
-            }
-            if (x == startX && y == startY) {
-                Log.log(Log.Level.ERROR, "No free position");
-                return null;
-            }
-        }
-        return Position.of(x, y);
+        var pos = this.attachables.occupancy().findRandomFree();
+        if (pos == null) Log.log(Log.Level.ERROR, "No free position");
+        return pos;
     }
-    
+
+    /**
+     * Finds a free area which can hold a cluster of the given size.
+     * @return the free positions of the cluster or null if no such area exists
+     */
     public ArrayList<Position> findRandomFreeClusterPosition(int clusterSize) {
-        ArrayList<Position> cluster = new ArrayList<>();
-        int x = RNG.nextInt(dimX);
-        int y = RNG.nextInt(dimY);
-        final int radius = (int) (Math.log(clusterSize)/Math.log(2)); 
-        final int startX = x;
-        final int startY = y;
-        
-        while (isBlocked(Position.of(x,y)) || !hasEnoughFreeSpots(Position.of(x,y), radius, clusterSize)) {
-            if (++x >= dimX) {
-                x = 0;
-                if (++y >= dimY) y = 0;
-            }
-            if (x == startX && y == startY) {
-                Log.log(Log.Level.ERROR, "No free position");
-                return null;
-            }
+        final int radius = (int) (Math.log(clusterSize)/Math.log(2));
+        var center = this.attachables.occupancy().findRandomFreeArea(radius, clusterSize);
+        if (center == null) {
+            Log.log(Log.Level.ERROR, "No free position");
+            return null;
         }
 
-        Position.of(x, y).spanArea(radius).forEach((p) -> {
+        ArrayList<Position> cluster = new ArrayList<>();
+        center.spanArea(radius).forEach((p) -> {
             if(cluster.size() == clusterSize) return;
-            if(isUnblocked(p)) cluster.add(p);
+            if(isUnblocked(p) && !cluster.contains(p)) cluster.add(p);
         });
 
         return cluster;
@@ -248,14 +233,6 @@ public class Grid {
         return !isUnblocked(pos);
     }
 
-    private boolean hasEnoughFreeSpots(Position origin, int radius, int numberPositionNeeded){
-        int freeSpots = 0;
-        for (Position p : origin.spanArea(radius)) 
-            if (isUnblocked(p))
-                freeSpots++;
-        return freeSpots >= numberPositionNeeded;
-    }
-
     public Position findRandomFreePosition(Position center, int maxDistance) {
         for (var i = 0; i < 50; i++) {
             int x = center.x;
@@ -274,7 +251,7 @@ public class Grid {
      * @return true if there is no attachable (i.e. an entity, a block, an obstacle, ...) in the cell
      */
     public boolean isUnblocked(Position xy) {
-        return isUnblocked(xy, Collections.emptySet());
+        return this.attachables.occupancy().isFree(xy);
     }
 
     private boolean isUnblocked(Position xy, Set<Positionable> excludedObjects) {
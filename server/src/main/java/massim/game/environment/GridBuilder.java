@@ -1,42 +1,31 @@
 package massim.game.environment;
 
-import massim.game.environment.zones.ZoneType;
 import massim.protocol.data.Position;
 import massim.util.Log;
 import massim.util.RNG;
 import org.json.JSONArray;
 
-import javax.imageio.ImageIO;
-import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
-import java.util.Map;
+import java.util.ArrayList;
 
 public abstract class GridBuilder {
 
-    private static final Map<Integer, String> bitmapColors =
-            Map.of(-16777216, "obstacle", -1, "empty", -65536, "goal");
-
-    public static void fromBitmap(String path, Grid grid) {
-        if (!path.isBlank()){
-            var mapFile = new File(path);
-            if (mapFile.exists()) {
-                try {
-                    BufferedImage img = ImageIO.read(mapFile);
-                    var width = Math.min(grid.getDimX(), img.getWidth());
-                    var height = Math.min(grid.getDimY(), img.getHeight());
-                    for (int x = 0; x < width; x++) { for (int y = 0; y < height; y++) {
-                        switch(bitmapColors.getOrDefault(img.getRGB(x, y), "empty")) {
-                            case "obstacle" -> grid.obstacles().create(Position.of(x, y));
-                            case "goal" -> grid.addZone(ZoneType.GOAL, Position.of(x, y), 1);
-                            default -> Log.log(Log.Level.ERROR, "Unknown bitmap color: " + img.getRGB(x, y));
-                        }
-                    }}
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-            }
-            else Log.log(Log.Level.ERROR, "File " + mapFile.getAbsolutePath() + " not found.");
+    /**
+     * Loads the map layout from a bitmap or a map file (see {@link MapFile}).
+     */
+    public static void fromFile(String path, Grid grid) {
+        if (path.isBlank()) return;
+        var mapFile = new File(path);
+        if (!mapFile.exists()) {
+            Log.log(Log.Level.ERROR, "File " + mapFile.getAbsolutePath() + " not found.");
+            return;
+        }
+        try {
+            var map = path.endsWith(MapFile.EXTENSION)? MapFile.load(mapFile.toPath()) : MapFile.fromImage(mapFile);
+            map.applyTo(grid);
+        } catch (IOException e) {
+            e.printStackTrace();
         }
     }
 
@@ -66,44 +55,16 @@ public abstract class GridBuilder {
                     var iterations = instruction.getInt(2);
                     var createLimit = instruction.getInt(3);
                     var destroyLimit = instruction.getInt(4);
-                    for (var it = 0; it < iterations; it++) {
-                        obstacles = doCaveIteration(obstacles, createLimit, destroyLimit);
-                    }
+                    obstacles = CaveAutomaton.fromTerrain(obstacles)
+                            .run(iterations, createLimit, destroyLimit)
+                            .toTerrain();
                 }
             }
         }
+        var positions = new ArrayList<Position>();
         for (int y = 0; y < dimY; y++) for (int x = 0; x < dimX; x++)
-            if (obstacles[x][y]) grid.obstacles().create(Position.of(x, y));
-    }
-
-    private static boolean[][] doCaveIteration(boolean[][] obstacles, int createLimit, int destroyLimit) {
-        int dimX = obstacles.length;
-        int dimY = obstacles[0].length;
-        var newTerrain = new boolean[dimX][dimY];
-        for (var x = 0; x < dimX; x++) { for (var y = 0; y < dimY; y++) {
-            var n = countObstacleNeighbours(obstacles, x,y);
-            if (obstacles[x][y]) {
-                newTerrain[x][y] = (n >= destroyLimit);
-            }
-            else if (!obstacles[x][y]) {
-                newTerrain[x][y] = (n > createLimit);
-            }
-            else {
-                newTerrain[x][y] = obstacles[x][y];
-            }
-        }}
-        return newTerrain;
-    }
-
-    private static int countObstacleNeighbours(boolean[][] obstacles, int cx, int cy) {
-        var count = 0;
-        for (var x = cx - 1; x <= cx + 1; x++) { for (var y = cy - 1; y <= cy + 1; y++) {
-            if (x != cx || y != cy) {
-                var pos = Position.wrapped(x, y);
-                if (obstacles[pos.x][pos.y]) count++;
-            }
-        }}
-        return count;
+            if (obstacles[x][y]) positions.add(Position.of(x, y));
+        grid.obstacles().createAll(positions);
     }
 
     /**
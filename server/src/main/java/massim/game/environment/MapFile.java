@@ -0,0 +1,169 @@
+package massim.game.environment;
+
+import massim.game.environment.zones.ZoneType;
+import massim.protocol.data.Position;
+import massim.util.Log;
+
+import javax.imageio.ImageIO;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.function.Consumer;
+
+/**
+ * Compact map layout: one bit-packed layer for obstacles and one for goal cells.
+ * File layout (big-endian): magic, version, width, height (4 bytes each), followed by the obstacle layer
+ * and the goal layer, each as ceil(width * height / 64) longs. Cell (x,y) is bit (y * width + x).
+ * Map files are memory-mapped when loading, so only the set bits have to be visited.
+ */
+public final class MapFile {
+
+    public static final String EXTENSION = ".map";
+
+    private static final int MAGIC = 0x4D534D50; // "MSMP"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+
+    private static final int OBSTACLE_COLOR = -16777216;
+    private static final int EMPTY_COLOR = -1;
+    private static final int GOAL_COLOR = -65536;
+
+    private final int width;
+    private final int height;
+    private final LongBuffer obstacles;
+    private final LongBuffer goals;
+
+    private MapFile(int width, int height, LongBuffer obstacles, LongBuffer goals) {
+        this.width = width;
+        this.height = height;
+        this.obstacles = obstacles;
+        this.goals = goals;
+    }
+
+    private static int layerLength(int width, int height) {
+        return (int) (((long) width * height + 63) / 64);
+    }
+
+    /**
+     * Memory-maps a map file.
+     */
+    public static MapFile load(Path path) throws IOException {
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            var buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.limit() < HEADER_BYTES || buffer.getInt(0) != MAGIC)
+                throw new IOException("Not a map file: " + path);
+            if (buffer.getInt(4) != VERSION)
+                throw new IOException("Unsupported map file version " + buffer.getInt(4) + ": " + path);
+            var width = buffer.getInt(8);
+            var height = buffer.getInt(12);
+            var length = layerLength(width, height);
+            if (buffer.limit() < HEADER_BYTES + 16L * length)
+                throw new IOException("Map file truncated: " + path);
+            var layers = buffer.position(HEADER_BYTES).slice().asLongBuffer();
+            return new MapFile(width, height,
+                    layers.slice(0, length), layers.slice(length, length));
+        }
+    }
+
+    /**
+     * Decodes a bitmap: black pixels are obstacles, red pixels are goal cells and everything else is empty.
+     * Unknown colors are reported once per color.
+     */
+    public static MapFile fromImage(File file) throws IOException {
+        var img = ImageIO.read(file);
+        if (img == null) throw new IOException("Cannot decode image: " + file);
+        var width = img.getWidth();
+        var height = img.getHeight();
+        var length = layerLength(width, height);
+        var obstacles = new long[length];
+        var goals = new long[length];
+        var unknownColors = new HashMap<Integer, Integer>();
+        var row = new int[width];
+        for (var y = 0; y < height; y++) {
+            img.getRGB(0, y, width, 1, row, 0, width);
+            for (var x = 0; x < width; x++) {
+                var index = y * width + x;
+                switch (row[x]) {
+                    case OBSTACLE_COLOR -> obstacles[index >>> 6] |= 1L << index;
+                    case GOAL_COLOR -> goals[index >>> 6] |= 1L << index;
+                    case EMPTY_COLOR -> {}
+                    default -> unknownColors.merge(row[x], 1, Integer::sum);
+                }
+            }
+        }
+        unknownColors.forEach((color, count) -> Log.log(Log.Level.ERROR,
+                "Unknown bitmap color " + color + " (" + count + " pixels) in " + file + " treated as empty."));
+        return new MapFile(width, height, LongBuffer.wrap(obstacles), LongBuffer.wrap(goals));
+    }
+
+    public void save(Path path) throws IOException {
+        try (var out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path.toFile())))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(width);
+            out.writeInt(height);
+            for (var layer : new LongBuffer[]{obstacles, goals})
+                for (var i = 0; i < layer.limit(); i++) out.writeLong(layer.get(i));
+        }
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Adds obstacles and goal cells to the grid. Cells outside the grid are ignored.
+     */
+    public void applyTo(Grid grid) {
+        var obstaclePositions = new ArrayList<Position>();
+        forEachSet(obstacles, grid, obstaclePositions::add);
+        grid.obstacles().createAll(obstaclePositions);
+        forEachSet(goals, grid, pos -> grid.addZone(ZoneType.GOAL, pos, 1));
+    }
+
+    private void forEachSet(LongBuffer layer, Grid grid, Consumer<Position> action) {
+        var maxX = Math.min(width, grid.getDimX());
+        var maxY = Math.min(height, grid.getDimY());
+        for (var w = 0; w < layer.limit(); w++) {
+            var word = layer.get(w);
+            while (word != 0) {
+                var index = ((long) w << 6) + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+                var x = (int) (index % width);
+                var y = (int) (index / width);
+                if (x < maxX && y < maxY) action.accept(Position.of(x, y));
+            }
+        }
+    }
+
+    /**
+     * Converts bitmaps to map files next to them.
+     * @param args paths of the bitmaps to convert
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.out.println("Usage: MapFile <bitmap> [<bitmap> ...]");
+            return;
+        }
+        for (var arg : args) {
+            var file = new File(arg);
+            var name = file.getName();
+            var dot = name.lastIndexOf('.');
+            var target = new File(file.getParentFile(), (dot > 0? name.substring(0, dot) : name) + EXTENSION);
+            fromImage(file).save(target.toPath());
+            Log.log(Log.Level.NORMAL, "Converted " + file + " to " + target);
+        }
+    }
+}
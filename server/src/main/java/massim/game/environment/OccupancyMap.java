@@ -0,0 +1,190 @@
+package massim.game.environment;
+
+import massim.protocol.data.Position;
+import massim.util.RNG;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+/**
+ * Keeps track of which cells are blocked by at least one attachable.
+ * Free cells are stored in a bitset (one bit per cell, row-major), so that random free cells can be sampled uniformly
+ * and free areas can be found without looking up every single cell in the hubs.
+ */
+public class OccupancyMap {
+
+    private final int dimX;
+    private final int dimY;
+
+    /**
+     * number of attachables in each cell
+     */
+    private final int[] occupants;
+
+    /**
+     * bit set iff the cell is free
+     */
+    private final long[] free;
+    private int freeCount;
+
+    /**
+     * per column: number of free cells in rows [0, y) at index y; rebuilt lazily for dirty columns
+     */
+    private final int[][] columnSums;
+    private final boolean[] dirtyColumns;
+
+    public OccupancyMap(int dimX, int dimY) {
+        this.dimX = dimX;
+        this.dimY = dimY;
+        var cells = dimX * dimY;
+        this.occupants = new int[cells];
+        this.free = new long[(cells + 63) / 64];
+        for (var i = 0; i < cells; i++)
+            free[i >>> 6] |= 1L << i;
+        this.freeCount = cells;
+        this.columnSums = new int[dimX][dimY + 1];
+        this.dirtyColumns = new boolean[dimX];
+        Arrays.fill(dirtyColumns, true);
+    }
+
+    public void occupy(Position pos) {
+        var index = indexOf(pos.x, pos.y);
+        if (occupants[index]++ == 0) {
+            free[index >>> 6] &= ~(1L << index);
+            freeCount--;
+            dirtyColumns[index % dimX] = true;
+        }
+    }
+
+    public void release(Position pos) {
+        var index = indexOf(pos.x, pos.y);
+        if (occupants[index] == 0) return;
+        if (--occupants[index] == 0) {
+            free[index >>> 6] |= 1L << index;
+            freeCount++;
+            dirtyColumns[index % dimX] = true;
+        }
+    }
+
+    public boolean isFree(Position pos) {
+        return isFree(indexOf(pos.x, pos.y));
+    }
+
+    public int getFreeCount() {
+        return freeCount;
+    }
+
+    /**
+     * @return a free cell chosen uniformly at random or null if there is no free cell
+     */
+    public Position findRandomFree() {
+        if (freeCount == 0) return null;
+        return positionOf(selectFree(RNG.nextInt(freeCount)));
+    }
+
+    /**
+     * Looks for a free cell which has at least the given number of free cells in the area around it.
+     * Candidates are checked in order starting from a free cell chosen uniformly at random.
+     * @param radius the radius of the area around the center
+     * @param needed number of free cells required in the area (including the center)
+     * @return the center of such an area or null if there is none
+     */
+    public Position findRandomFreeArea(int radius, int needed) {
+        if (freeCount == 0) return null;
+        var start = selectFree(RNG.nextInt(freeCount));
+        var index = start;
+        do {
+            var x = index % dimX;
+            var y = index / dimX;
+            if (countFreeInArea(x, y, radius) >= needed) return Position.of(x, y);
+            index = nextFree(index + 1);
+            if (index < 0) index = nextFree(0);
+        } while (index != start);
+        return null;
+    }
+
+    /**
+     * @return the number of distinct free cells within the given (manhattan) radius of the center (wrapped)
+     */
+    public int countFreeInArea(int cx, int cy, int radius) {
+        if (2 * radius + 1 > Math.min(dimX, dimY))
+            return countFreeInAreaSlow(cx, cy, radius);
+        var count = 0;
+        for (var dx = -radius; dx <= radius; dx++) {
+            var x = Math.floorMod(cx + dx, dimX);
+            var dy = radius - Math.abs(dx);
+            var sums = columnSums(x);
+            var from = Math.floorMod(cy - dy, dimY);
+            var to = from + 2 * dy + 1; // exclusive
+            if (to <= dimY)
+                count += sums[to] - sums[from];
+            else
+                count += sums[dimY] - sums[from] + sums[to - dimY];
+        }
+        return count;
+    }
+
+    private int countFreeInAreaSlow(int cx, int cy, int radius) {
+        var count = 0;
+        for (var pos : new HashSet<>(Position.of(cx, cy).spanArea(radius)))
+            if (isFree(pos)) count++;
+        return count;
+    }
+
+    private int[] columnSums(int x) {
+        var sums = columnSums[x];
+        if (dirtyColumns[x]) {
+            for (var y = 0; y < dimY; y++)
+                sums[y + 1] = sums[y] + (isFree(y * dimX + x) ? 1 : 0);
+            dirtyColumns[x] = false;
+        }
+        return sums;
+    }
+
+    private boolean isFree(int index) {
+        return (free[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * @return the index of the (rank+1)-th free cell
+     */
+    private int selectFree(int rank) {
+        for (var w = 0; w < free.length; w++) {
+            var word = free[w];
+            var bits = Long.bitCount(word);
+            if (rank < bits) {
+                for (var i = 0; i < rank; i++)
+                    word &= word - 1; // drop lowest set bit
+                return (w << 6) + Long.numberOfTrailingZeros(word);
+            }
+            rank -= bits;
+        }
+        return -1;
+    }
+
+    /**
+     * @return index of the next free cell at or after the given index or -1 if there is none
+     */
+    private int nextFree(int from) {
+        var cells = dimX * dimY;
+        if (from >= cells) return -1;
+        var w = from >>> 6;
+        var word = free[w] & (-1L << from);
+        while (true) {
+            if (word != 0) {
+                var index = (w << 6) + Long.numberOfTrailingZeros(word);
+                return index < cells ? index : -1;
+            }
+            if (++w == free.length) return -1;
+            word = free[w];
+        }
+    }
+
+    private int indexOf(int x, int y) {
+        return Math.floorMod(y, dimY) * dimX + Math.floorMod(x, dimX);
+    }
+
+    private Position positionOf(int index) {
+        return Position.of(index % dimX, index / dimX);
+    }
+}
@@ -0,0 +1,126 @@
+package massim.game.environment;
+
+import massim.protocol.data.TaskInfo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps all tasks of a simulation. Tasks that can still be submitted are kept in a queue ordered by deadline,
+ * tasks which are completed or expired are moved to the archive.
+ */
+public class TaskRegistry {
+
+    private final Map<String, Task> active = new LinkedHashMap<>();
+    private final PriorityQueue<Task> deadlines = new PriorityQueue<>(Comparator.comparingInt(Task::getDeadline));
+    private final Map<String, Task> archive = new HashMap<>();
+
+    /**
+     * caches derived from the active tasks, null if the active tasks changed since
+     */
+    private List<Task> sortedCache;
+    private Set<TaskInfo> perceptCache;
+
+    public void add(Task task) {
+        remove(task.getName());
+        if (task.isCompleted())
+            archive.put(task.getName(), task);
+        else {
+            active.put(task.getName(), task);
+            deadlines.add(task);
+            invalidate();
+        }
+    }
+
+    private void remove(String name) {
+        archive.remove(name);
+        var task = active.remove(name);
+        if (task != null) {
+            deadlines.remove(task);
+            invalidate();
+        }
+    }
+
+    /**
+     * @return the task with the given name (active or archived) or null if there is none
+     */
+    public Task get(String name) {
+        var task = active.get(name);
+        return task != null? task : archive.get(name);
+    }
+
+    /**
+     * @return the number of tasks ever added
+     */
+    public int size() {
+        return active.size() + archive.size();
+    }
+
+    /**
+     * Moves the task to the archive if it has been completed.
+     */
+    public void checkCompleted(Task task) {
+        if (task.isCompleted() && active.remove(task.getName()) != null) {
+            deadlines.remove(task);
+            archive.put(task.getName(), task);
+            invalidate();
+        }
+    }
+
+    /**
+     * Moves all tasks with a deadline before the given step to the archive.
+     */
+    private void expire(int step) {
+        while (!deadlines.isEmpty() && deadlines.peek().getDeadline() < step) {
+            var task = deadlines.poll();
+            active.remove(task.getName());
+            archive.put(task.getName(), task);
+            invalidate();
+        }
+    }
+
+    /**
+     * @return the number of tasks that can be submitted in the given step
+     */
+    public int countActive(int step) {
+        expire(step);
+        return active.size();
+    }
+
+    /**
+     * @return all tasks that can be submitted in the given step ordered by deadline
+     */
+    public List<Task> getActive(int step) {
+        expire(step);
+        if (sortedCache == null) {
+            var sorted = new ArrayList<>(active.values());
+            sorted.sort(Comparator.comparingInt(Task::getDeadline));
+            sortedCache = Collections.unmodifiableList(sorted);
+        }
+        return sortedCache;
+    }
+
+    /**
+     * @return the percepts of all tasks that can be submitted in the given step (rebuilt only if these tasks changed)
+     */
+    public Set<TaskInfo> getPercepts(int step) {
+        expire(step);
+        if (perceptCache == null)
+            perceptCache = Collections.unmodifiableSet(
+                    active.values().stream().map(Task::toPercept).collect(Collectors.toSet()));
+        return perceptCache;
+    }
+
+    private void invalidate() {
+        sortedCache = null;
+        perceptCache = null;
+    }
+}
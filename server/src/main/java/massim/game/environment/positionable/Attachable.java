@@ -24,13 +24,39 @@ public abstract class Attachable extends Positionable {
     public void attach(Attachable other) {
         attachments.add(other);
         other.requestAttachment(this);
+        this.notifyAttachmentsChanged();
     }
 
     public void detach(Attachable other) {
         attachments.remove(other);
         other.requestDetachment(this);
+        this.notifyAttachmentsChanged();
+        other.notifyAttachmentsChanged();
     }
 
+    /**
+     * Informs everything connected to this attachable that its group of attachments has changed.
+     */
+    private void notifyAttachmentsChanged() {
+        for (var a : this.collectAllAttachments(true)) {
+            a.markChanged();
+            a.onAttachmentsChanged();
+        }
+    }
+
+    @Override
+    public void moveTo(Position newPosition) {
+        super.moveTo(newPosition);
+        // the positions of all things of the group are part of the JSON representation of each of them
+        if (!attachments.isEmpty())
+            this.collectAllAttachments(false).forEach(Attachable::markChanged);
+    }
+
+    /**
+     * Called whenever something was attached to or detached from the group of attachables this one belongs to.
+     */
+    protected void onAttachmentsChanged() {}
+
     public Set<Attachable> getAttachments() {
         return new HashSet<>(attachments);
     }
@@ -1,12 +1,58 @@
 package massim.game.environment.positionable;
 
+import massim.game.environment.OccupancyMap;
 import massim.game.environment.positionable.observer.MultiHub;
+import massim.protocol.data.Position;
+
+import java.util.Collection;
 
 public class AttachableHub extends MultiHub<Attachable> {
+
+    private final OccupancyMap occupancy;
+
+    public AttachableHub(int dimX, int dimY) {
+        this.occupancy = new OccupancyMap(dimX, dimY);
+    }
+
     @Override
     public void notifyCreate(Positionable p) {
         super.notifyCreate(p);
-        if (p instanceof Attachable a)
+        if (p instanceof Attachable a) {
             this.add(a);
+            this.occupancy.occupy(a.getPosition());
+        }
+    }
+
+    @Override
+    public void notifyCreateAll(Collection<? extends Positionable> positionables) {
+        this.reserve(positionables.size());
+        for (var p : positionables) {
+            if (p instanceof Attachable a) {
+                this.add(a);
+                this.occupancy.occupy(a.getPosition());
+            }
+        }
+    }
+
+    @Override
+    public void notifyDestroy(Positionable p) {
+        if (this.contains(p)) this.occupancy.release(p.getPosition());
+        super.notifyDestroy(p);
+    }
+
+    @Override
+    public void notifyMove(Positionable p, Position oldPosition, Position newPosition) {
+        if (this.contains(p)) {
+            this.occupancy.release(oldPosition);
+            this.occupancy.occupy(newPosition);
+        }
+        super.notifyMove(p, oldPosition, newPosition);
+    }
+
+    /**
+     * @return the map of cells blocked by any attachable
+     */
+    public OccupancyMap occupancy() {
+        return this.occupancy;
     }
 }
@@ -36,21 +36,23 @@ public class Entity extends Attachable {
 
     private final String agentName;
     private final String teamName;
-    private Role role;
 
     private String lastAction = "";
     private List<String> lastActionParams = Collections.emptyList();
     private String lastActionResult = "";
 
-    private int energy;
-    private int deactivatedSteps = 0;
+    /**
+     * energy, deactivation, role and number of attached things are kept in the store
+     */
+    private final EntityStore store;
+    private final int slot;
 
-    Entity(Position pos, String agentName, String teamName, Role role) {
+    Entity(EntityStore store, Position pos, String agentName, String teamName, Role role) {
         super(pos);
         this.agentName = agentName;
         this.teamName = teamName;
-        this.energy = maxEnergy;
-        this.role = role;
+        this.store = store;
+        this.slot = store.add(this, teamName, role, maxEnergy);
     }
 
     @Override
@@ -59,16 +61,6 @@ public class Entity extends Attachable {
         return new Thing(localPosition.x, localPosition.y, Thing.TYPE_ENTITY, teamName);
     }
 
-    /**
-     * recharge or repair
-     */
-    public void preStep() {
-        if (deactivatedSteps > 0 && --deactivatedSteps == 0)
-            this.energy = Entity.refreshEnergy;
-        else
-            energy = Math.min(this.energy + Entity.stepRecharge, Entity.maxEnergy);
-    }
-
     public String getTeamName() {
         return teamName;
     }
@@ -107,27 +99,39 @@ public class Entity extends Attachable {
     }
 
     public int getVision() {
-        return this.role.vision();
+        return this.getRole().vision();
     }
 
     /**
      * @return the entity's speed considering current attachments
      */
     public int getCurrentSpeed() {
-        return this.role.maxSpeed(collectAllAttachments(false).size());
+        return this.getRole().maxSpeed(getCarriedCount());
+    }
+
+    /**
+     * @return the number of things attached to the entity (directly or indirectly)
+     */
+    public int getCarriedCount() {
+        return store.getCarried(slot);
+    }
+
+    @Override
+    protected void onAttachmentsChanged() {
+        store.markCarryDirty(slot);
     }
 
     public void deactivate() {
-        deactivatedSteps = Entity.deactivatedDuration + 1; //entity repaired in preStep
+        store.setDeactivatedSteps(slot, Entity.deactivatedDuration + 1); //entity repaired in preStep
         detachAll();
     }
 
     public boolean isDeactivated() {
-        return deactivatedSteps > 0;
+        return store.getDeactivatedSteps(slot) > 0;
     }
 
     public int getEnergy() {
-        return energy;
+        return store.getEnergy(slot);
     }
 
     public void consumeClearEnergy() {
@@ -135,24 +139,32 @@ public class Entity extends Attachable {
     }
 
     public void decreaseEnergy(int amount) {
-        this.energy = Math.max(energy - amount, 0);
-        if (this.energy <= 0) {
+        var energy = Math.max(store.getEnergy(slot) - amount, 0);
+        store.setEnergy(slot, energy);
+        if (energy <= 0) {
             this.deactivate();
         }
     }
 
     public Role getRole() {
-        return this.role;
+        return store.getRole(slot);
     }
 
     public void setRole(Role role) {
-        this.role = role;
+        store.setRole(slot, role);
+    }
+
+    /**
+     * @return the entity's index in the store, stable until the entity is destroyed
+     */
+    int getSlot() {
+        return slot;
     }
 
     public boolean isActionAvailable(String action) {
         if (action.equals(ADAPT))
             action = ADOPT;
-        return action.equals(Actions.NO_ACTION) || this.role.actions().contains(action);
+        return action.equals(Actions.NO_ACTION) || this.getRole().actions().contains(action);
     }
 
     @Override
@@ -164,8 +176,8 @@ public class Entity extends Attachable {
         return super.toJSON()
                 .put("name", this.agentName)
                 .put("team", this.teamName)
-                .put("role", this.role.name())
-                .put("energy", this.energy)
+                .put("role", this.getRole().name())
+                .put("energy", this.getEnergy())
                 .put("vision", this.getVision())
                 .put("action", this.lastAction)
                 .put("actionParams", this.lastActionParams)
@@ -7,6 +7,7 @@ import massim.util.Log;
 import massim.util.RNG;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -15,9 +16,10 @@ public class EntityHub extends MultiHub<Entity> {
 
     private final Map<String, Role> roles = new HashMap<>();
     private final Map<String, Entity> nameToEntity = new HashMap<>();
+    private final EntityStore store = new EntityStore();
 
     public Entity create(Position pos, String agentName, String teamName, Role role) {
-        var entity = new Entity(pos, agentName, teamName, role);
+        var entity = new Entity(store, pos, agentName, teamName, role);
         entity.init();
         this.nameToEntity.put(agentName, entity);
         return this.add(entity);
@@ -26,7 +28,51 @@ public class EntityHub extends MultiHub<Entity> {
     @Override
     public void notifyDestroy(Positionable positionable) {
         super.notifyDestroy(positionable);
-        if (positionable instanceof Entity entity) nameToEntity.remove(entity.getAgentName());
+        if (positionable instanceof Entity entity) {
+            nameToEntity.remove(entity.getAgentName());
+            store.remove(entity.getSlot());
+        }
+    }
+
+    /**
+     * @return a live, read-only view of all entities (without copying them into a new set)
+     */
+    public Collection<Entity> view() {
+        return store.view();
+    }
+
+    /**
+     * Recharges or repairs all entities.
+     */
+    public void preStep() {
+        store.preStep();
+    }
+
+    public List<String> getTeamNames() {
+        return new ArrayList<>(store.getTeamNames());
+    }
+
+    /**
+     * @param teamName the team or null for all teams
+     * @return the number of entities of the team currently having the role
+     */
+    public int countRole(String teamName, String roleName) {
+        return store.countRole(teamName, roleName);
+    }
+
+    /**
+     * @param teamName the team or null for all teams
+     * @return all entities of the team currently having the role
+     */
+    public List<Entity> getWithRole(String teamName, String roleName) {
+        return store.getWithRole(teamName, roleName);
+    }
+
+    /**
+     * @return all entities with more than the given number of things attached (directly or indirectly)
+     */
+    public List<Entity> getCarryingMoreThan(int count) {
+        return store.getCarryingMoreThan(count);
     }
 
     public Entity getByName(String name) {
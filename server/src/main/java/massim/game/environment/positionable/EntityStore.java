@@ -0,0 +1,273 @@
+package massim.game.environment.positionable;
+
+import massim.protocol.data.Role;
+
+import java.util.AbstractCollection;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Keeps the frequently updated state of all entities in arrays. Each entity gets a slot when it is created,
+ * which stays the same until the entity is destroyed. {@link Entity} objects read and write their state here,
+ * so that sweeps over all entities are plain loops over the arrays.
+ */
+final class EntityStore {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private Entity[] entities = new Entity[INITIAL_CAPACITY];
+    private int[] energy = new int[INITIAL_CAPACITY];
+    private int[] deactivatedSteps = new int[INITIAL_CAPACITY];
+    private int[] roles = new int[INITIAL_CAPACITY];
+    private int[] teams = new int[INITIAL_CAPACITY];
+
+    /**
+     * number of things attached to each entity (directly or indirectly), refreshed lazily for dirty slots
+     */
+    private int[] carried = new int[INITIAL_CAPACITY];
+    private final BitSet carryDirty = new BitSet();
+    private final BitSet carriers = new BitSet();
+
+    /**
+     * number of entities per team and role, indexed by [team id][role id]
+     */
+    private int[][] roleCounts = new int[0][0];
+
+    /**
+     * number of slots ever used (slots below may be free)
+     */
+    private int limit = 0;
+    private int count = 0;
+    private final Deque<Integer> freeSlots = new ArrayDeque<>();
+
+    private final List<Role> roleTable = new ArrayList<>();
+    private final Map<String, Integer> roleIds = new HashMap<>();
+    private final List<String> teamTable = new ArrayList<>();
+    private final Map<String, Integer> teamIds = new HashMap<>();
+
+    private final EntityView view = new EntityView();
+
+    int add(Entity entity, String teamName, Role role, int initialEnergy) {
+        int slot;
+        if (freeSlots.isEmpty()) {
+            if (limit == entities.length) grow();
+            slot = limit++;
+        }
+        else slot = freeSlots.pop();
+        entities[slot] = entity;
+        energy[slot] = initialEnergy;
+        deactivatedSteps[slot] = 0;
+        roles[slot] = roleId(role);
+        teams[slot] = teamId(teamName);
+        carried[slot] = 0;
+        carryDirty.clear(slot);
+        carriers.clear(slot);
+        changeRoleCount(teams[slot], roles[slot], 1);
+        count++;
+        return slot;
+    }
+
+    void remove(int slot) {
+        if (entities[slot] == null) return;
+        entities[slot] = null;
+        changeRoleCount(teams[slot], roles[slot], -1);
+        carryDirty.clear(slot);
+        carriers.clear(slot);
+        freeSlots.push(slot);
+        count--;
+    }
+
+    private void grow() {
+        var capacity = entities.length * 2;
+        entities = Arrays.copyOf(entities, capacity);
+        energy = Arrays.copyOf(energy, capacity);
+        deactivatedSteps = Arrays.copyOf(deactivatedSteps, capacity);
+        roles = Arrays.copyOf(roles, capacity);
+        teams = Arrays.copyOf(teams, capacity);
+        carried = Arrays.copyOf(carried, capacity);
+    }
+
+    private void changeRoleCount(int team, int role, int delta) {
+        if (team >= roleCounts.length) roleCounts = Arrays.copyOf(roleCounts, team + 1);
+        var counts = roleCounts[team];
+        if (counts == null || role >= counts.length)
+            counts = roleCounts[team] = counts == null? new int[role + 1] : Arrays.copyOf(counts, role + 1);
+        counts[role] += delta;
+    }
+
+    int roleId(Role role) {
+        return roleIds.computeIfAbsent(role.name(), name -> {
+            roleTable.add(role);
+            return roleTable.size() - 1;
+        });
+    }
+
+    int teamId(String teamName) {
+        return teamIds.computeIfAbsent(teamName, name -> {
+            teamTable.add(name);
+            return teamTable.size() - 1;
+        });
+    }
+
+    int getEnergy(int slot) {
+        return energy[slot];
+    }
+
+    void setEnergy(int slot, int value) {
+        energy[slot] = value;
+    }
+
+    int getDeactivatedSteps(int slot) {
+        return deactivatedSteps[slot];
+    }
+
+    void setDeactivatedSteps(int slot, int value) {
+        deactivatedSteps[slot] = value;
+    }
+
+    Role getRole(int slot) {
+        return roleTable.get(roles[slot]);
+    }
+
+    int getRoleId(int slot) {
+        return roles[slot];
+    }
+
+    void setRole(int slot, Role role) {
+        changeRoleCount(teams[slot], roles[slot], -1);
+        roles[slot] = roleId(role);
+        changeRoleCount(teams[slot], roles[slot], 1);
+    }
+
+    int getTeamId(int slot) {
+        return teams[slot];
+    }
+
+    List<String> getTeamNames() {
+        return teamTable;
+    }
+
+    /**
+     * @param teamName the team or null for all teams
+     * @return the number of entities in the team having the role
+     */
+    int countRole(String teamName, String roleName) {
+        var role = roleIds.get(roleName);
+        if (role == null) return 0;
+        var count = 0;
+        for (var team = 0; team < roleCounts.length; team++) {
+            if (teamName != null && !teamTable.get(team).equals(teamName)) continue;
+            var counts = roleCounts[team];
+            if (counts != null && role < counts.length) count += counts[role];
+        }
+        return count;
+    }
+
+    /**
+     * @param teamName the team or null for all teams
+     */
+    List<Entity> getWithRole(String teamName, String roleName) {
+        var result = new ArrayList<Entity>();
+        var role = roleIds.get(roleName);
+        var team = teamName == null? null : teamIds.get(teamName);
+        if (role == null || (teamName != null && team == null)) return result;
+        for (var slot = 0; slot < limit; slot++) {
+            if (entities[slot] != null && roles[slot] == role && (team == null || teams[slot] == team))
+                result.add(entities[slot]);
+        }
+        return result;
+    }
+
+    /**
+     * Marks the number of attached things of the entity as outdated.
+     */
+    void markCarryDirty(int slot) {
+        carryDirty.set(slot);
+    }
+
+    int getCarried(int slot) {
+        if (carryDirty.get(slot)) refreshCarried(slot);
+        return carried[slot];
+    }
+
+    private void refreshCarried(int slot) {
+        carried[slot] = entities[slot].collectAllAttachments(false).size();
+        carriers.set(slot, carried[slot] > 0);
+        carryDirty.clear(slot);
+    }
+
+    /**
+     * @param threshold a non-negative number
+     * @return all entities which have more than the given number of things attached
+     */
+    List<Entity> getCarryingMoreThan(int threshold) {
+        for (var slot = carryDirty.nextSetBit(0); slot >= 0; slot = carryDirty.nextSetBit(slot + 1))
+            refreshCarried(slot);
+        var result = new ArrayList<Entity>();
+        for (var slot = carriers.nextSetBit(0); slot >= 0; slot = carriers.nextSetBit(slot + 1))
+            if (carried[slot] > threshold) result.add(entities[slot]);
+        return result;
+    }
+
+    /**
+     * Recharges or repairs all entities.
+     */
+    void preStep() {
+        for (var slot = 0; slot < limit; slot++) {
+            if (entities[slot] == null) continue;
+            if (deactivatedSteps[slot] > 0 && --deactivatedSteps[slot] == 0)
+                energy[slot] = Entity.refreshEnergy;
+            else
+                energy[slot] = Math.min(energy[slot] + Entity.stepRecharge, Entity.maxEnergy);
+        }
+    }
+
+    /**
+     * @return a live, read-only view of all entities in slot order
+     */
+    Collection<Entity> view() {
+        return view;
+    }
+
+    private class EntityView extends AbstractCollection<Entity> {
+
+        @Override
+        public Iterator<Entity> iterator() {
+            return new Iterator<>() {
+                private int next = advance(0);
+
+                private int advance(int from) {
+                    while (from < limit && entities[from] == null) from++;
+                    return from;
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return next < limit;
+                }
+
+                @Override
+                public Entity next() {
+                    if (next >= limit) throw new NoSuchElementException();
+                    var entity = entities[next];
+                    next = advance(next + 1);
+                    return entity;
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return count;
+        }
+    }
+}
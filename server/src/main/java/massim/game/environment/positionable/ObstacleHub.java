@@ -3,6 +3,10 @@ package massim.game.environment.positionable;
 import massim.game.environment.positionable.observer.Hub;
 import massim.protocol.data.Position;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
 public class ObstacleHub extends Hub<Obstacle>  {
 
     public Obstacle create(Position pos) {
@@ -11,4 +15,24 @@ public class ObstacleHub extends Hub<Obstacle>  {
         obstacle.init();
         return this.add(obstacle);
     }
-}
\ No newline at end of file
+
+    /**
+     * Creates obstacles for static terrain in one pass. The other observers are notified once with all new obstacles
+     * instead of once per obstacle. Positions that are already taken are skipped.
+     * Obstacles created at runtime should use {@link #create(Position)}.
+     * @return the new obstacles
+     */
+    public List<Obstacle> createAll(Collection<Position> positions) {
+        this.reserve(positions.size());
+        var obstacles = new ArrayList<Obstacle>(positions.size());
+        for (var pos : positions) {
+            if (this.isTaken(pos)) continue;
+            obstacles.add(this.add(new Obstacle(pos)));
+        }
+        if (!obstacles.isEmpty()) {
+            for (var observer : obstacles.get(0).getObservers())
+                if (observer != this) observer.notifyCreateAll(obstacles);
+        }
+        return obstacles;
+    }
+}
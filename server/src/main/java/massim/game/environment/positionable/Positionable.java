@@ -11,6 +11,11 @@ public abstract class Positionable extends GameObject {
 
     private Position position;
 
+    /**
+     * The JSON representation of this object, cached until the object changes (null if it is outdated).
+     */
+    private JSONObject cachedJSON;
+
     public Positionable(Position position) {
         this.position = position;
     }
@@ -29,6 +34,7 @@ public abstract class Positionable extends GameObject {
         for (PositionObserver o : this.getObservers())
             o.notifyMove(this, this.position, newPosition);
         this.position = newPosition;
+        this.markChanged();
     }
 
     public void destroy() {
@@ -49,4 +55,25 @@ public abstract class Positionable extends GameObject {
                 .put("id", this.getID())
                 .put("pos", this.position.toJSON());
     }
+
+    /**
+     * @return the JSON representation of this object, which is only rebuilt if the object has changed since
+     * the last call. It is shared between calls, so it must not be modified.
+     */
+    public JSONObject getCachedJSON() {
+        var json = this.cachedJSON;
+        if (json == null) {
+            json = this.toJSON();
+            this.cachedJSON = json;
+        }
+        return json;
+    }
+
+    /**
+     * Marks the cached JSON representation as outdated. Has to be called whenever anything that is part of
+     * the JSON representation changes.
+     */
+    protected void markChanged() {
+        this.cachedJSON = null;
+    }
 }
@@ -11,8 +11,8 @@ import java.util.*;
  */
 public class Hub<T extends Positionable> implements PositionObserver {
 
-    private final Map<Position, T> positionToItem = new HashMap<>();
-    private final Map<Integer, T> idToItem = new HashMap<>();
+    private Map<Position, T> positionToItem = new HashMap<>();
+    private Map<Integer, T> idToItem = new HashMap<>();
 
     public T lookup(Position pos) {
         return positionToItem.get(pos);
@@ -28,6 +28,19 @@ public class Hub<T extends Positionable> implements PositionObserver {
         return item;
     }
 
+    /**
+     * Grows the storage at once so that the given number of additional items can be added without rehashing.
+     */
+    protected void reserve(int additional) {
+        var capacity = (int) ((idToItem.size() + additional) / .75f) + 1;
+        var newIds = new HashMap<Integer, T>(capacity);
+        newIds.putAll(idToItem);
+        idToItem = newIds;
+        var newPositions = new HashMap<Position, T>(capacity);
+        newPositions.putAll(positionToItem);
+        positionToItem = newPositions;
+    }
+
     @Override
     public void notifyCreate(Positionable p) {
         var previous = this.positionToItem.get(p.getPosition());
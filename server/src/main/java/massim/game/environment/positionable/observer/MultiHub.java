@@ -11,8 +11,8 @@ import java.util.stream.Collectors;
  */
 public abstract class MultiHub<T extends Positionable> implements PositionObserver {
 
-    private final Map<Position, Set<T>> positionToItems = new HashMap<>();
-    private final Map<Integer, T> idToItem = new HashMap<>();
+    private Map<Position, Set<T>> positionToItems = new HashMap<>();
+    private Map<Integer, T> idToItem = new HashMap<>();
 
     public Set<T> lookup(Position pos) {
         return new HashSet<>(this.getEntry(pos));
@@ -28,6 +28,19 @@ public abstract class MultiHub<T extends Positionable> implements PositionObserv
         return item;
     }
 
+    /**
+     * Grows the storage at once so that the given number of additional items can be added without rehashing.
+     */
+    protected void reserve(int additional) {
+        var capacity = (int) ((idToItem.size() + additional) / .75f) + 1;
+        var newIds = new HashMap<Integer, T>(capacity);
+        newIds.putAll(idToItem);
+        idToItem = newIds;
+        var newPositions = new HashMap<Position, Set<T>>(capacity);
+        newPositions.putAll(positionToItems);
+        positionToItems = newPositions;
+    }
+
     @Override
     public void notifyCreate(Positionable p) {}
 
@@ -47,6 +60,13 @@ public abstract class MultiHub<T extends Positionable> implements PositionObserv
         this.getEntry(newPosition).add(item);
     }
 
+    /**
+     * @return whether the given positionable is tracked by this hub
+     */
+    public boolean contains(Positionable p) {
+        return this.idToItem.containsKey(p.getID());
+    }
+
     public boolean isTaken(Position pos) {
         return this.getEntry(pos).size() > 0;
     }
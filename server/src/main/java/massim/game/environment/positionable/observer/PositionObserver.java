@@ -2,10 +2,19 @@ package massim.game.environment.positionable.observer;
 import massim.game.environment.positionable.Positionable;
 import massim.protocol.data.Position;
 
+import java.util.Collection;
+
 public interface PositionObserver {
 
     void notifyCreate(Positionable positionable);
 
+    /**
+     * Notifies about many new positionables at once (e.g. static terrain).
+     */
+    default void notifyCreateAll(Collection<? extends Positionable> positionables) {
+        positionables.forEach(this::notifyCreate);
+    }
+
     void notifyDestroy(Positionable positionable);
 
     void notifyMove(Positionable positionable, Position oldPosition, Position newPosition);
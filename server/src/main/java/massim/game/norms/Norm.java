@@ -9,6 +9,7 @@ import org.json.JSONArray;
 import org.json.JSONObject;
 
 import massim.game.environment.positionable.Entity;
+import massim.game.environment.positionable.EntityHub;
 import massim.game.GameState;
 import massim.protocol.data.NormInfo;
 import massim.protocol.data.Subject;
@@ -24,6 +25,15 @@ public abstract class Norm {
     public abstract Record checkTemplate(JSONObject optionalParams);
     public abstract void bill(GameState state, Record info);
     public abstract ArrayList<Entity> enforce(Collection<Entity> entities);
+
+    /**
+     * Enforces the norm for all entities of the hub. Subclasses may use the counts the hub keeps up to date
+     * instead of checking each entity.
+     */
+    public ArrayList<Entity> enforce(EntityHub entities) {
+        return enforce(entities.view());
+    }
+
     abstract JSONArray requirementsAsJSON();
     abstract Set<Subject> getRequirements();
 
@@ -14,6 +14,7 @@ import org.json.JSONArray;
 import org.json.JSONObject;
 
 import massim.game.environment.positionable.Entity;
+import massim.game.environment.positionable.EntityHub;
 import massim.game.GameState;
 import massim.protocol.data.NormInfo;
 import massim.protocol.data.Subject;
@@ -51,7 +52,7 @@ public class NormAdopt extends Norm{
             teamIndex.put(team, teamIndex.size());
         
         HashMap<String, int[]> counters = new HashMap<>();
-        for (Entity entity : state.grid().entities().getAll()) {
+        for (Entity entity : state.grid().entities().view()) {
             String role = entity.getRole().name();
             if (!counters.containsKey(role))
                 counters.put(role, new int[teamIndex.size()]); // default value of an element is 0
@@ -94,6 +95,20 @@ public class NormAdopt extends Norm{
         return violators;
     }
 
+    @Override
+    public ArrayList<Entity> enforce(EntityHub entities) {
+        ArrayList<Entity> violators = new ArrayList<>();
+
+        for (String team : entities.getTeamNames()) {
+            for (Entry<String, Integer> entry : prohibitedRoles.entrySet()) {
+                if (entities.countRole(team, entry.getKey()) > entry.getValue())
+                    violators.addAll(entities.getWithRole(team, entry.getKey()));
+            }
+        }
+
+        return violators;
+    }
+
     private ArrayList<Entity> enforceTeam(Collection<Entity> entities) {
         ArrayList<Entity> violators = new ArrayList<>();
 
@@ -9,6 +9,7 @@ import org.json.JSONArray;
 import org.json.JSONObject;
 
 import massim.game.environment.positionable.Entity;
+import massim.game.environment.positionable.EntityHub;
 import massim.game.GameState;
 import massim.protocol.data.NormInfo;
 import massim.protocol.data.Subject;
@@ -58,13 +59,18 @@ public class NormCarry extends Norm{
         ArrayList<Entity> violators = new ArrayList<>();
         
         for (Entity entity : entities) {
-            if (entity.collectAllAttachments(false).size() > this.maxAttached)
+            if (entity.getCarriedCount() > this.maxAttached)
                 violators.add(entity);
         }
         
         return violators;
     }
 
+    @Override
+    public ArrayList<Entity> enforce(EntityHub entities) {
+        return new ArrayList<>(entities.getCarryingMoreThan(this.maxAttached));
+    }
+
     @Override
     public JSONArray requirementsAsJSON() {
         JSONObject req = new JSONObject();
@@ -12,6 +12,7 @@ import org.json.JSONArray;
 import org.json.JSONObject;
 
 import massim.game.environment.positionable.Entity;
+import massim.game.environment.positionable.EntityHub;
 import massim.game.GameState;
 import massim.protocol.data.NormInfo;
 import massim.protocol.data.Subject;
@@ -48,6 +49,18 @@ public class NormRoleIndividual extends Norm{
         return violators;
     }
 
+    @Override
+    public ArrayList<Entity> enforce(EntityHub entities) {
+        ArrayList<Entity> violators = new ArrayList<>();
+
+        for (String role : this.prohibitedRoles.keySet()) {
+            if (entities.countRole(null, role) > 0)
+                violators.addAll(entities.getWithRole(null, role));
+        }
+
+        return violators;
+    }
+
     @Override
     public JSONArray requirementsAsJSON() {
         JSONArray roles = new JSONArray();
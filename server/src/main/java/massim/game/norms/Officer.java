@@ -7,12 +7,15 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
 
 import massim.game.environment.positionable.Entity;
+import massim.game.environment.positionable.EntityHub;
 import massim.game.GameState;
 import massim.util.Log;
 import massim.util.RNG;
@@ -76,12 +79,27 @@ public class Officer {
     private final double chance;
     private double accumulatedWeight = 0;
     private final Map<String, Norm> norms;
-    private final Map<Integer, ArrayList<Record>> archive;
+    /**
+     * norms that may still be announced or active, grouped by the last step they are active in
+     */
+    private final TreeMap<Integer, List<Norm>> liveNorms = new TreeMap<>();
+    private int indexedStep = Integer.MIN_VALUE;
+    /**
+     * number of steps for which violations are kept
+     */
+    private static final int ARCHIVE_STEPS = 10;
+
+    private final TreeMap<Integer, ArrayList<Record>> archive;
+    /**
+     * names of violated norms per agent in the step last regulated
+     */
+    private final Map<String, List<String>> violationIndex = new HashMap<>();
+    private int violationIndexStep = Integer.MIN_VALUE;
     private final ArrayList<NormTemplate> templates;
 
     public Officer(JSONObject config) {
         this.norms = new HashMap<>();
-        this.archive = new HashMap<>();
+        this.archive = new TreeMap<>();
         this.templates = new ArrayList<>();
         this.maxActiveNorms = config.getInt("simultaneous");
         this.chance = config.getDouble("chance")/100;
@@ -98,25 +116,56 @@ public class Officer {
     public Collection<Norm> getNorms() {
         return norms.values();
     }
+    /**
+     * @return all norms that might be announced or active in the given step
+     */
+    private Collection<Norm> getCandidates(int step) {
+        if (step < indexedStep) return this.norms.values(); // looking back, so check the whole history
+        indexedStep = step;
+        liveNorms.headMap(step, false).clear();
+        var candidates = new ArrayList<Norm>();
+        liveNorms.values().forEach(candidates::addAll);
+        return candidates;
+    }
+
     public List<Norm> getActiveNorms(int step) {
-        return this.norms.values().stream()
+        return this.getCandidates(step).stream()
                 .filter(n -> n.isActive(step))
                 .collect(Collectors.toList());
     }
     public List<Norm> getOnlyAnnouncedNorms(int step) {
-        return this.norms.values().stream()
+        return this.getCandidates(step).stream()
                 .filter(n -> n.toAnnounce(step))
                 .collect(Collectors.toList());
     }
     public List<Norm> getApprovedNorms(int step) {
-        return this.norms.values().stream()
+        return this.getCandidates(step).stream()
                 .filter(n -> n.toAnnounce(step) || n.isActive(step))
                 .collect(Collectors.toList());
     }
+    /**
+     * @return the violations of the given step (empty if the step is more than {@link #ARCHIVE_STEPS} steps older
+     * than the latest violations)
+     */
     public ArrayList<Record> getArchive(int step) {
         return archive.containsKey(step) ? archive.get(step) : new ArrayList<>();
     }
+
+    /**
+     * @return the names of the norms the agent violated in the given step
+     */
+    public List<String> getViolations(int step, String agentName) {
+        if (step == violationIndexStep)
+            return violationIndex.getOrDefault(agentName, List.of());
+        return getArchive(step).stream()
+                .filter(r -> r.entity.getAgentName().equals(agentName))
+                .map(r -> r.norm)
+                .collect(Collectors.toList());
+    }
+
     public Set<String> getPunishments(int step, Entity entity) {
+        if (step == violationIndexStep)
+            return new HashSet<>(getViolations(step, entity.getAgentName()));
         if (archive.containsKey(step)){
             return archive.get(step).stream()
                         .filter(r -> r.entity.equals(entity))
@@ -140,6 +189,7 @@ public class Officer {
                 Norm norm = createNorm(step, temp);
                 norm.bill(state, temp.getAdditionalInfo());
                 norms.put(norm.getName(), norm);
+                liveNorms.computeIfAbsent(norm.until, k -> new ArrayList<>()).add(norm);
                 Log.log(Log.Level.NORMAL, "Created "+ norm);
                 break;
             }
@@ -147,10 +197,21 @@ public class Officer {
     }
 
     public void regulateNorms(int step, Collection<Entity> entities) {
+        regulateNorms(step, norm -> norm.enforce(entities));
+    }
+
+    /**
+     * Regulates all entities of the hub, using the role and carry counts it keeps up to date.
+     */
+    public void regulateNorms(int step, EntityHub entities) {
+        regulateNorms(step, norm -> norm.enforce(entities));
+    }
+
+    private void regulateNorms(int step, Function<Norm, ArrayList<Entity>> enforcement) {
         ArrayList<Record> allViolators = new ArrayList<>();
         List<Norm> activeNorms = getActiveNorms(step);
         for (Norm norm : activeNorms) {
-            ArrayList<Entity> violators = norm.enforce(entities);
+            ArrayList<Entity> violators = enforcement.apply(norm);
             
             for (Entity violator : violators) {
                 norm.punish(violator);
@@ -158,8 +219,16 @@ public class Officer {
                 Log.log(Log.Level.NORMAL, violator.getAgentName()+" violated "+norm.getName());
             }
         }       
-        if (allViolators.size() > 0)
+        if (allViolators.size() > 0) {
             this.archive.put(step, allViolators);
+            this.archive.headMap(step - ARCHIVE_STEPS, true).clear();
+        }
+        if (allViolators.size() > 0 || step != violationIndexStep) {
+            violationIndex.clear();
+            violationIndexStep = step;
+            for (Record record : getArchive(step))
+                violationIndex.computeIfAbsent(record.entity.getAgentName(), k -> new ArrayList<>()).add(record.norm);
+        }
     }
 
     private Norm createNorm(int step, NormTemplate template){
@@ -0,0 +1,137 @@
+package massim;
+
+import massim.config.TeamConfig;
+import massim.protocol.messages.ActionMessage;
+import massim.protocol.messages.BatchMessage;
+import massim.protocol.messages.Message;
+import massim.protocol.messages.RequestActionMessage;
+import massim.protocol.messages.scenario.Actions;
+import massim.protocol.util.FrameInputStream;
+import massim.protocol.util.WireCodec;
+import massim.protocol.util.WireFormat;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public class AgentManagerTest {
+
+    private static RequestActionMessage percept(int step) {
+        return new RequestActionMessage(System.currentTimeMillis(), -1, -1, step) {
+            @Override
+            public JSONObject makePercept() {
+                return new JSONObject().put("step", step);
+            }
+        };
+    }
+
+    @org.junit.Test
+    public void onlyTeammatesCanBeMultiplexed() {
+        var teamA = new TeamConfig("A");
+        teamA.addAgent("A1", "1");
+        teamA.addAgent("A2", "1");
+        var teamB = new TeamConfig("B");
+        teamB.addAgent("B1", "1");
+        var agentManager = new AgentManager(List.of(teamA, teamB), 500, 65536, 0);
+        try {
+            assert agentManager.authTeammate("A1", "A2", "1");
+            assert !agentManager.authTeammate("A1", "A2", "2");
+            assert !agentManager.authTeammate("A1", "B1", "1");
+            assert !agentManager.authTeammate("A1", "C1", "1");
+        }
+        finally {
+            agentManager.stop();
+        }
+    }
+
+    @org.junit.Test
+    public void multiplexedAgentsShareOneConnection() throws Exception {
+        var team = new TeamConfig("A");
+        team.addAgent("A1", "1");
+        team.addAgent("A2", "1");
+        team.addAgent("A3", "1");
+        var agentManager = new AgentManager(List.of(team), 500, 65536, 0);
+
+        try (var server = new ServerSocket(0); var client = new Socket("localhost", server.getLocalPort())) {
+            var codec = new WireCodec(WireFormat.JSON, false);
+            agentManager.handleNewConnection(server.accept(), List.of("A1", "A2", "A3"), true, false, codec, false);
+
+            // the remote client answers for A1 and A2 only (tagging the actions)
+            var remote = new Thread(() -> {
+                try {
+                    var in = new FrameInputStream(client.getInputStream());
+                    for (var i = 0; i < 3; i++) {
+                        var json = codec.read(in, Integer.MAX_VALUE);
+                        var agent = json.getString(Message.KEY_AGENT);
+                        if (agent.equals("A3")) continue;
+                        var id = json.getJSONObject("content").getLong("id");
+                        var action = new ActionMessage("skip", id, List.of()).toJson().put(Message.KEY_AGENT, agent);
+                        codec.write(client.getOutputStream(), action);
+                    }
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            });
+            remote.start();
+
+            var actions = agentManager.requestActions(Map.of("A1", percept(1), "A2", percept(1), "A3", percept(1)));
+            remote.join();
+            assert actions.get("A1").getActionType().equals("skip");
+            assert actions.get("A2").getActionType().equals("skip");
+            assert actions.get("A3").getActionType().equals(Actions.NO_ACTION);
+        }
+        finally {
+            agentManager.stop();
+        }
+    }
+
+    @org.junit.Test
+    public void batchedConnectionSendsOneFramePerStep() throws Exception {
+        var team = new TeamConfig("A");
+        team.addAgent("A1", "1");
+        team.addAgent("A2", "1");
+        team.addAgent("A3", "1");
+        var agentManager = new AgentManager(List.of(team), 500, 65536, 0);
+
+        try (var server = new ServerSocket(0); var client = new Socket("localhost", server.getLocalPort())) {
+            var codec = new WireCodec(WireFormat.JSON, false);
+            agentManager.handleNewConnection(server.accept(), List.of("A1", "A2", "A3"), true, true, codec, false);
+
+            // the remote client receives one batch and answers for A1 and A2 in one batch as well
+            var received = new ArrayList<String>();
+            var remote = new Thread(() -> {
+                try {
+                    var in = new FrameInputStream(client.getInputStream());
+                    var json = codec.read(in, Integer.MAX_VALUE);
+                    var batch = (BatchMessage) Message.buildFromJson(json);
+                    var actions = new ArrayList<JSONObject>();
+                    for (var message : batch.getMessages()) {
+                        var agent = message.getString(Message.KEY_AGENT);
+                        received.add(agent);
+                        if (agent.equals("A3")) continue;
+                        var id = message.getJSONObject("content").getLong("id");
+                        actions.add(new ActionMessage("skip", id, List.of()).toJson().put(Message.KEY_AGENT, agent));
+                    }
+                    codec.write(client.getOutputStream(), new BatchMessage(actions).toJson());
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            });
+            remote.start();
+
+            var actions = agentManager.requestActions(Map.of("A1", percept(1), "A2", percept(1), "A3", percept(1)));
+            remote.join();
+            assert received.size() == 3 && received.containsAll(List.of("A1", "A2", "A3"));
+            assert actions.get("A1").getActionType().equals("skip");
+            assert actions.get("A2").getActionType().equals("skip");
+            assert actions.get("A3").getActionType().equals(Actions.NO_ACTION);
+        }
+        finally {
+            agentManager.stop();
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package massim;
+
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class ReplayWriterTest {
+
+    private static JSONObject read(Path file) throws IOException {
+        return new JSONObject(Files.readString(file));
+    }
+
+    @org.junit.Test
+    public void writesGroupsOfEncodedSteps() throws IOException {
+        var dir = Files.createTempDirectory("replay");
+        var writer = new ReplayWriter(dir.toString());
+        writer.updateState("sim", "now", true, 0, new JSONObject().put("grid", "ä").toString());
+        for (var step = 0; step < 7; step++) {
+            writer.updateState("sim", "now", false, step, new JSONObject().put("step", step).toString());
+        }
+
+        var replay = dir.resolve("now-sim");
+        assert read(replay.resolve("static.json")).getString("grid").equals("ä");
+        var first = read(replay.resolve("0.json"));
+        assert first.length() == 5;
+        for (var step = 0; step < 5; step++) assert first.getJSONObject(String.valueOf(step)).getInt("step") == step;
+        var second = read(replay.resolve("5.json"));
+        assert second.length() == 2;
+        assert second.getJSONObject("6").getInt("step") == 6;
+    }
+}
@@ -2,13 +2,16 @@ package massim.game;
 
 import massim.game.environment.positionable.Block;
 import massim.game.environment.positionable.Entity;
+import massim.game.environment.positionable.Marker;
 import massim.game.environment.zones.ZoneType;
 import massim.helper.ConfigBuilder;
 import massim.protocol.data.Position;
 import massim.protocol.data.Role;
+import massim.protocol.data.Thing;
 import massim.protocol.messages.scenario.ActionResults;
 import massim.protocol.messages.scenario.StepPercept;
 import massim.util.RNG;
+import org.json.JSONObject;
 
 import java.util.*;
 import java.util.List;
@@ -88,6 +91,27 @@ public class GameStateTest {
         var percept = new StepPercept(state.getStepPercepts().get(a1.getAgentName()).toJson().getJSONObject("content"));
         assert(percept.attachedThings.contains(a2.getPosition().relativeTo(a1.getPosition())));
         assert(percept.attachedThings.contains(block.getPosition().relativeTo(a1.getPosition())));
+
+        // the same cells seen by a2 (translated to its position)
+        var percept2 = new StepPercept(state.getStepPercepts().get(a2.getAgentName()).toJson().getJSONObject("content"));
+        assert(percept2.attachedThings.contains(Position.of(0, -1)));
+        assert(percept2.attachedThings.contains(Position.of(0, 1)));
+        assert(!percept2.attachedThings.contains(Position.of(0, 0)));
+        assert(percept2.things.stream().anyMatch(t -> t.x == 0 && t.y == 1 && t.type.equals("block") && t.details.equals("b1")));
+    }
+
+    @org.junit.Test
+    public void wirePerceptsMatchPercepts() {
+        state.createTask("testTask1", 10, 1, Map.of(Position.of(0, 1), state.grid().blocks().getTypes().iterator().next()));
+        var percepts = state.getStepPercepts();
+        assert percepts.size() == this.agents * 2;
+        for (var percept : percepts.values()) {
+            assert percept.toWireJson().toString().equals(percept.toJson().toString());
+            assert ((StepPercept) percept).taskInfo.size() == 1;
+        }
+        var a1 = (StepPercept) percepts.get("A1");
+        var a2 = (StepPercept) percepts.get("A2");
+        assert a1.taskInfo == a2.taskInfo;
     }
 
     @org.junit.Test
@@ -339,6 +363,63 @@ public class GameStateTest {
         assert obstacles.length() == 10;
     }
 
+    @org.junit.Test
+    public void snapshotReusesUnchangedThings() {
+        var a1 = state.grid().entities().getByName("A1");
+        assert state.teleport("A1", Position.of(10, 10));
+        var block1 = state.grid().blocks().create(Position.of(10, 11), "b1");
+        var block2 = state.grid().blocks().create(Position.of(10, 12), "b1");
+        var obstacle = state.grid().obstacles().create(Position.of(20, 20));
+        assert state.handleAttachAction(a1, "s").equals(ActionResults.SUCCESS);
+        block1.attach(block2);
+
+        var first = state.takeSnapshot();
+        var second = state.takeSnapshot();
+        assert find(second, "obstacles", obstacle.getID()) == find(first, "obstacles", obstacle.getID());
+        assert find(second, "blocks", block2.getID()) == find(first, "blocks", block2.getID());
+
+        // moving the entity moves (and changes) the whole group
+        assert state.handleMoveAction(a1, List.of("n")).equals(ActionResults.SUCCESS);
+        var moved = state.takeSnapshot();
+        var block2JSON = find(moved, "blocks", block2.getID());
+        assert block2JSON != find(second, "blocks", block2.getID());
+        assert Position.fromJSON(block2JSON.getJSONArray("pos")).equals(Position.of(10, 11));
+        assert block2JSON.getJSONArray("attached").length() == 2;
+        assert find(moved, "obstacles", obstacle.getID()) == find(first, "obstacles", obstacle.getID());
+
+        // rotating does not move the entity, but the entity is no longer part of the group afterwards
+        assert state.handleRotateAction(a1, true).equals(ActionResults.SUCCESS);
+        assert state.handleDetachAction(a1, "w").equals(ActionResults.SUCCESS);
+        var detached = state.takeSnapshot();
+        assert find(detached, "blocks", block2.getID()).getJSONArray("attached").length() == 1;
+        assert find(detached, "blocks", block1.getID()).getJSONArray("attached").length() == 1;
+    }
+
+    private static JSONObject find(JSONObject snapshot, String key, int id) {
+        var things = snapshot.getJSONArray(key);
+        for (var i = 0; i < things.length(); i++) {
+            if (things.getJSONObject(i).getInt("id") == id) return things.getJSONObject(i);
+        }
+        return null;
+    }
+
+    @org.junit.Test
+    public void equalThingsArePerceivedOnce() {
+        // Thing has value semantics (needed for percept deltas), so equal things in the same cell become one percept
+        assert state.teleport("A1", Position.of(10, 10));
+        state.grid().markers().create(Position.of(11, 10), Marker.Type.CLEAR);
+        state.grid().markers().create(Position.of(11, 10), Marker.Type.CLEAR);
+        state.grid().markers().create(Position.of(11, 10), Marker.Type.CLEAR_PERIMETER);
+        var things = state.getStepPerceptsAndCleanUp().get("A1").toJson()
+                .getJSONObject("content").getJSONObject("percept").getJSONArray("things");
+        var markers = 0;
+        for (var i = 0; i < things.length(); i++) {
+            var thing = Thing.fromJson(things.getJSONObject(i));
+            if (thing.type.equals(Thing.TYPE_MARKER) && thing.x == 1 && thing.y == 0) markers++;
+        }
+        assert markers == 2;
+    }
+
     private void moveAgentsToStandardPositions() {
         state.teleport("A1", Position.of(0, 0));
         state.teleport("A2", Position.of(1, 0));
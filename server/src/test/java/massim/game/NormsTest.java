@@ -210,6 +210,39 @@ public class NormsTest {
         assert b1.getEnergy() == b1Energy;
     }
 
+    @org.junit.Test
+    public void testNormAdoptForAllEntities(){
+        JSONObject regulation = getJSONRegulation();
+        JSONObject norm = getJSONNorm();
+        norm.put("name", "Adopt");
+        norm.getJSONObject("optional").put("playing", 50);
+        regulation.put("chance", 100);
+        regulation.getJSONArray("subjects").put(norm);
+        Officer officer = new Officer(regulation);
+        officer.createNorms(1, this.state);
+
+        var entities = this.state.grid().entities();
+        Role defaultRole = entities.getRole("default");
+        Role other = entities.getRoles().stream().filter(r -> r != defaultRole).findFirst().orElseThrow();
+        for (String name : List.of("A1", "A2", "B1", "B2", "B3"))
+            entities.getByName(name).setRole(other);
+        assert entities.countRole("A", "default") == 1;
+        assert entities.countRole(null, "default") == 1;
+
+        Entity b1 = entities.getByName("B1");
+        int b1Energy = b1.getEnergy();
+        officer.regulateNorms(25, entities);
+        assert b1.getEnergy() == b1Energy;
+
+        for (String name : List.of("B1", "B2", "B3"))
+            entities.getByName(name).setRole(defaultRole);
+        assert entities.countRole("B", "default") == 3;
+        officer.regulateNorms(25, entities);
+        assert b1.getEnergy() < b1Energy;
+        assert entities.getByName("A3").getEnergy() == Entity.maxEnergy;
+        assert officer.getArchive(25).size() == 3;
+    }
+
     @org.junit.Test
     public void testRoleSelectionNormAdopt(){
         JSONObject regulation = getJSONRegulation();
@@ -332,6 +365,33 @@ public class NormsTest {
         assert record2.entity().getAgentName().equals(a2.getAgentName());
     }
 
+    @org.junit.Test
+    public void testArchiveIsBounded(){
+        JSONObject regulation = getJSONRegulation();
+        JSONObject norm = getJSONNorm();
+        norm.put("name", "RoleIndividual");
+        regulation.getJSONArray("subjects").put(norm);
+        regulation.put("chance", 100);
+        Officer officer = new Officer(regulation);
+        officer.createNorms(1, this.state);
+
+        String role = officer.getNorms().iterator().next().toPercept().requirements.get(0).name;
+        Entity a1 = this.state.grid().entities().getByName("A1");
+        a1.setRole(this.state.grid().entities().getRole(role));
+        List<Entity> agents = List.of(a1);
+
+        for (int step = 25; step < 100; step++)
+            officer.regulateNorms(step, agents);
+        assert officer.getArchive(99).size() == 1;
+        assert officer.getArchive(90).size() == 1;
+        assert officer.getArchive(89).size() == 0;
+        assert officer.getArchive(25).size() == 0;
+
+        assert officer.getViolations(99, "A1").equals(List.of("n1"));
+        assert officer.getViolations(95, "A1").equals(List.of("n1"));
+        assert officer.getViolations(99, "A2").isEmpty();
+    }
+
     @org.junit.Test
     public void testPerceptsForMonitor(){
         // SET EVENT CHANCE TO 0!!! 
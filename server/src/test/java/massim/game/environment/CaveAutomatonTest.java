@@ -0,0 +1,40 @@
+package massim.game.environment;
+
+import java.util.Random;
+
+public class CaveAutomatonTest {
+
+    @org.junit.Test
+    public void matchesCellwiseRule() {
+        var random = new Random(42);
+        int[][] dims = {{1, 1}, {2, 3}, {5, 5}, {63, 17}, {64, 64}, {65, 40}, {70, 70}, {130, 129}, {200, 150}};
+        for (var dim : dims) {
+            var terrain = new boolean[dim[0]][dim[1]];
+            for (var x = 0; x < dim[0]; x++) for (var y = 0; y < dim[1]; y++)
+                terrain[x][y] = random.nextDouble() < .45;
+            for (var rule : new int[][]{{5, 4}, {4, 3}, {0, 9}, {-1, 0}}) {
+                var expected = terrain;
+                for (var it = 0; it < 5; it++) expected = iterate(expected, rule[0], rule[1]);
+                var actual = CaveAutomaton.fromTerrain(terrain).run(5, rule[0], rule[1]).toTerrain();
+                for (var x = 0; x < dim[0]; x++)
+                    assert java.util.Arrays.equals(expected[x], actual[x]);
+            }
+        }
+    }
+
+    /**
+     * straightforward implementation of one cave generation step for reference
+     */
+    private static boolean[][] iterate(boolean[][] obstacles, int createLimit, int destroyLimit) {
+        var dimX = obstacles.length;
+        var dimY = obstacles[0].length;
+        var result = new boolean[dimX][dimY];
+        for (var x = 0; x < dimX; x++) for (var y = 0; y < dimY; y++) {
+            var n = 0;
+            for (var dx = -1; dx <= 1; dx++) for (var dy = -1; dy <= 1; dy++)
+                if ((dx != 0 || dy != 0) && obstacles[Math.floorMod(x + dx, dimX)][Math.floorMod(y + dy, dimY)]) n++;
+            result[x][y] = obstacles[x][y]? n >= destroyLimit : n > createLimit;
+        }
+        return result;
+    }
+}
@@ -55,6 +55,66 @@ public class GridTest {
         assert grid.isUnblocked(cluster3.get(2));
     }
 
+    @org.junit.Test
+    public void findRandomFreePositionOnDenseMap() {
+        Grid grid = new Grid(this.gridjson, 10);
+        var freeCells = 0;
+        for (int x = 0; x < grid.getDimX(); x++)
+            for (int y = 0; y < grid.getDimY(); y++)
+                if (grid.isUnblocked(Position.of(x, y))) freeCells++;
+        assert grid.attachables().occupancy().getFreeCount() == freeCells;
+
+        for (int i = 0; i < 100; i++) {
+            var pos = grid.findRandomFreePosition();
+            assertNotNull(pos);
+            assert grid.isUnblocked(pos);
+            grid.obstacles().create(pos);
+            assert grid.isBlocked(pos);
+        }
+        assert grid.attachables().occupancy().getFreeCount() == freeCells - 100;
+
+        var cluster = grid.findRandomFreeClusterPosition(5);
+        assertNotNull(cluster);
+        assert new HashSet<>(cluster).size() == 5;
+        cluster.forEach(p -> { assert grid.isUnblocked(p); });
+    }
+
+    @org.junit.Test
+    public void findRandomFreePositionOnFullMap() {
+        this.gridjson.put("height", 4);
+        this.gridjson.put("width", 4);
+        this.gridjson.put("instructions", new JSONArray());
+        this.gridjson.put("goals", new JSONObject("{\"number\" : 0,\"size\" : [1,1],\"moveProbability\" : 0}"));
+        this.gridjson.put("roleZones", new JSONObject("{\"number\" : 0,\"size\" : [1,1]}"));
+        Grid grid = new Grid(this.gridjson, 10);
+        for (int x = 0; x < 4; x++)
+            for (int y = 0; y < 4; y++)
+                if (x != 2 || y != 1) grid.obstacles().create(Position.of(x, y));
+        assert grid.findRandomFreePosition().equals(Position.of(2, 1));
+        assert grid.findRandomFreeClusterPosition(2) == null;
+        grid.obstacles().lookup(Position.of(3, 1)).destroy();
+        assert grid.findRandomFreeClusterPosition(2).size() == 2;
+        grid.obstacles().create(Position.of(2, 1));
+        grid.obstacles().create(Position.of(3, 1));
+        assert grid.findRandomFreePosition() == null;
+    }
+
+    @org.junit.Test
+    public void createObstaclesInBulk() {
+        this.gridjson.put("instructions", new JSONArray());
+        Grid grid = new Grid(this.gridjson, 10);
+        var existing = grid.obstacles().create(Position.of(1, 1));
+        var created = grid.obstacles().createAll(
+                List.of(Position.of(1, 1), Position.of(2, 1), Position.of(3, 1), Position.of(2, 1)));
+        assert created.size() == 2;
+        assert grid.obstacles().lookup(Position.of(1, 1)) == existing;
+        assert grid.obstacles().getAll().size() == 3;
+        assert !grid.isUnblocked(Position.of(3, 1));
+        grid.obstacles().lookup(Position.of(3, 1)).destroy();
+        assert grid.isUnblocked(Position.of(3, 1));
+        assert grid.obstacles().lookup(Position.of(3, 1)) == null;
+    }
+
     private void printGridTerrain(Grid grid){
         for (int x=0; x < grid.getDimX(); x++){
             System.out.println(" ");
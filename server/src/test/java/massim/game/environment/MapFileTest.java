@@ -0,0 +1,58 @@
+package massim.game.environment;
+
+import massim.game.environment.positionable.Obstacle;
+import massim.game.environment.zones.Zone;
+import massim.game.environment.zones.ZoneType;
+import massim.protocol.data.Position;
+import massim.util.RNG;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+public class MapFileTest {
+
+    private static final String BITMAP = "conf/maps/test40x40.bmp";
+
+    @org.junit.Test
+    public void convertedMapMatchesBitmap() throws Exception {
+        var target = Files.createTempFile("test40x40", MapFile.EXTENSION);
+        try {
+            var image = MapFile.fromImage(new File(BITMAP));
+            image.save(target);
+            var map = MapFile.load(target);
+            assert map.getWidth() == 40 && map.getHeight() == 40;
+
+            var fromBitmap = createGrid(BITMAP);
+            var fromMap = createGrid(target.toString());
+            assert !fromBitmap.obstacles().getAll().isEmpty();
+            assert obstacles(fromBitmap).equals(obstacles(fromMap));
+            assert goals(fromBitmap).equals(goals(fromMap));
+        } finally {
+            Files.deleteIfExists(target);
+        }
+    }
+
+    private static Grid createGrid(String file) {
+        RNG.initialize(17);
+        var conf = new JSONObject()
+                .put("height", 40)
+                .put("width", 40)
+                .put("file", file)
+                .put("instructions", new JSONArray())
+                .put("goals", new JSONObject("{\"number\" : 0,\"size\" : [1,2],\"moveProbability\" : 0}"))
+                .put("roleZones", new JSONObject("{\"number\" : 0,\"size\" : [1,2]}"));
+        return new Grid(conf, 10);
+    }
+
+    private static Set<Position> obstacles(Grid grid) {
+        return grid.obstacles().getAll().stream().map(Obstacle::getPosition).collect(Collectors.toSet());
+    }
+
+    private static Set<Position> goals(Grid grid) {
+        return grid.getZones(ZoneType.GOAL).stream().map(Zone::position).collect(Collectors.toSet());
+    }
+}
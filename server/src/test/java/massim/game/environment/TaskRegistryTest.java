@@ -0,0 +1,49 @@
+package massim.game.environment;
+
+import massim.protocol.data.Position;
+
+import java.util.List;
+import java.util.Map;
+
+public class TaskRegistryTest {
+
+    private static Task task(String name, int deadline) {
+        return new Task(name, deadline, 1, Map.of(Position.of(0, 1), "b0"));
+    }
+
+    @org.junit.Test
+    public void tasksMoveToArchive() {
+        var tasks = new TaskRegistry();
+        var t1 = task("t1", 10);
+        var t2 = task("t2", 5);
+        var t3 = task("t3", 20);
+        tasks.add(t1);
+        tasks.add(t2);
+        tasks.add(t3);
+
+        assert tasks.getActive(0).equals(List.of(t2, t1, t3));
+        assert tasks.countActive(5) == 3;
+        assert tasks.countActive(6) == 2;
+        assert tasks.get("t2") == t2;
+
+        t3.completeOnce();
+        tasks.checkCompleted(t3);
+        assert tasks.getActive(6).equals(List.of(t1));
+        assert tasks.size() == 3;
+        assert tasks.get("t3") == t3;
+    }
+
+    @org.junit.Test
+    public void perceptsAreCachedUntilTasksChange() {
+        var tasks = new TaskRegistry();
+        tasks.add(task("t1", 10));
+        var percepts = tasks.getPercepts(1);
+        assert percepts.size() == 1;
+        assert tasks.getPercepts(2) == percepts;
+
+        tasks.add(task("t2", 3));
+        var updated = tasks.getPercepts(2);
+        assert updated != percepts && updated.size() == 2;
+        assert tasks.getPercepts(4).size() == 1;
+    }
+}
@@ -0,0 +1,64 @@
+package massim.game.environment.positionable;
+
+import massim.protocol.data.Position;
+import massim.protocol.data.Role;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+public class EntityHubTest {
+
+    private final Role worker = new Role("worker", 5, Set.of("move"), new int[]{1}, 1., 1);
+    private final Role digger = new Role("digger", 3, Set.of("move", "clear"), new int[]{1}, 1., 1);
+
+    @org.junit.Test
+    public void viewFollowsCreateAndDestroy() {
+        var hub = new EntityHub();
+        Entity.setObservers(List.of(hub));
+        var a = hub.create(Position.of(0, 0), "A1", "A", worker);
+        var b = hub.create(Position.of(1, 0), "B1", "B", digger);
+        var c = hub.create(Position.of(2, 0), "A2", "A", worker);
+        assert hub.view().size() == 3;
+        assert new ArrayList<>(hub.view()).equals(List.of(a, b, c));
+
+        b.destroy();
+        assert hub.view().size() == 2;
+        assert !hub.view().contains(b);
+        assert hub.getByName("B1") == null;
+
+        var d = hub.create(Position.of(3, 0), "B2", "B", digger);
+        assert hub.view().size() == 3;
+        assert d.getSlot() == b.getSlot();
+        assert d.getRole() == digger && a.getRole() == worker;
+        assert a.getTeamName().equals("A") && d.getTeamName().equals("B");
+    }
+
+    @org.junit.Test
+    public void preStepRechargesAndRepairs() {
+        Entity.maxEnergy = 10;
+        Entity.stepRecharge = 2;
+        Entity.refreshEnergy = 5;
+        Entity.deactivatedDuration = 2;
+        var hub = new EntityHub();
+        Entity.setObservers(List.of(hub));
+        var a = hub.create(Position.of(0, 0), "A1", "A", worker);
+        var b = hub.create(Position.of(1, 0), "A2", "A", worker);
+
+        a.decreaseEnergy(5);
+        b.decreaseEnergy(20);
+        assert a.getEnergy() == 5 && !a.isDeactivated();
+        assert b.getEnergy() == 0 && b.isDeactivated();
+
+        hub.preStep();
+        assert a.getEnergy() == 7;
+        assert b.isDeactivated();
+        hub.preStep();
+        hub.preStep();
+        assert a.getEnergy() == 10;
+        assert !b.isDeactivated() && b.getEnergy() == 5;
+
+        a.setRole(digger);
+        assert a.getRole() == digger && a.getVision() == 3;
+    }
+}
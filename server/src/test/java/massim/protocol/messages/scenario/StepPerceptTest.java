@@ -0,0 +1,123 @@
+package massim.protocol.messages.scenario;
+
+import massim.protocol.data.Position;
+import massim.protocol.data.Thing;
+import massim.protocol.messages.Message;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class StepPerceptTest {
+
+    private static StepPercept percept(int step, Set<Thing> things, List<Position> goalZones) {
+        return percept(step, things, goalZones, List.of("e"), "success");
+    }
+
+    private static StepPercept percept(int step, Set<Thing> things, List<Position> goalZones,
+                                       List<String> move, String result) {
+        return new StepPercept(step, 10, things, StepPercept.Shared.of(Set.of(), Set.of()),
+                "move", move, result, List.of(), new JSONArray(), "default",
+                100, false, new ArrayList<>(), goalZones, List.of(Position.of(0, 0)), null);
+    }
+
+    /**
+     * @return all obstacles of the given area, relative to the agent's position
+     */
+    private static Set<Thing> view(Position agent, int size) {
+        var things = new HashSet<Thing>();
+        for (var x = 0; x < size; x++) {
+            for (var y = 0; y < size; y++) {
+                if ((x * 7 + y * 3) % 5 == 0) things.add(new Thing(x - agent.x, y - agent.y, Thing.TYPE_OBSTACLE, ""));
+            }
+        }
+        return things;
+    }
+
+    private static StepPercept receive(JSONObject json) {
+        return (StepPercept) Message.buildFromJson(new JSONObject(json.toString()));
+    }
+
+    @org.junit.Test
+    public void deltasRestoreCompletePercepts() {
+        var things1 = new HashSet<Thing>();
+        for (var x = -3; x <= 3; x++) things1.add(new Thing(x, 2, Thing.TYPE_OBSTACLE, ""));
+        things1.add(new Thing(0, 0, Thing.TYPE_ENTITY, "A"));
+        var things2 = new HashSet<Thing>();
+        for (var x = -4; x <= 2; x++) things2.add(new Thing(x, 2, Thing.TYPE_OBSTACLE, ""));
+        things2.add(new Thing(0, 0, Thing.TYPE_ENTITY, "A"));
+        things2.add(new Thing(1, 0, Thing.TYPE_BLOCK, "b0"));
+
+        var p1 = percept(1, things1, List.of(Position.of(1, 1), Position.of(2, 1)));
+        var p2 = percept(2, things2, List.of(Position.of(0, 1), Position.of(1, 1)));
+
+        var delta = p2.toDeltaWireJson(p1);
+        var changes = delta.getJSONObject("content").getJSONObject("percept").getJSONObject("delta");
+        assert changes.getJSONObject("things").getJSONArray("added").length() == 2;
+        assert changes.getJSONObject("things").getJSONArray("removed").length() == 1;
+        assert changes.getJSONObject("roleZones").getJSONArray("added").isEmpty();
+
+        var r1 = receive(p1.toWireJson());
+        assert !r1.isDelta();
+        var r2 = receive(delta);
+        assert r2.isDelta();
+        assert !r2.applyDelta(null);
+        assert r2.applyDelta(r1);
+        assert !r2.isDelta();
+        assert r2.things.equals(things2);
+        assert new HashSet<>(r2.goalZones).equals(new HashSet<>(p2.goalZones));
+        assert r2.roleZones.equals(p2.roleZones);
+        assert r2.getStep() == 2;
+    }
+
+    @org.junit.Test
+    public void deltaNeedsCompletePrevious() {
+        var base = view(Position.of(0, 0), 5);
+        var extended = new HashSet<>(base);
+        extended.add(new Thing(1, 1, Thing.TYPE_BLOCK, "b0"));
+        var p1 = percept(1, base, List.of(), List.of("n"), "failed_path");
+        var p2 = percept(2, extended, List.of(), List.of("n"), "failed_path");
+        var p3 = percept(3, base, List.of(), List.of("n"), "failed_path");
+        var r2 = receive(p2.toDeltaWireJson(p1));
+        var r3 = receive(p3.toDeltaWireJson(p2));
+        assert !r3.applyDelta(r2); // r2 is still a delta itself
+        assert r2.applyDelta(receive(p1.toWireJson()));
+        assert r3.applyDelta(r2);
+        assert r3.things.equals(base);
+    }
+
+    @org.junit.Test
+    public void deltaCompensatesMoves() {
+        // the agent tried to move two cells north but only moved one
+        var things1 = view(Position.of(10, 10), 20);
+        var things2 = view(Position.of(10, 9), 20);
+        var p1 = percept(1, things1, List.of(Position.of(0, 1)));
+        var p2 = percept(2, things2, List.of(Position.of(0, 2)), List.of("n", "n"), "partial_success");
+
+        var delta = p2.toDeltaWireJson(p1);
+        var changes = delta.getJSONObject("content").getJSONObject("percept").getJSONObject("delta");
+        assert Position.fromJSON(changes.getJSONArray("shift")).equals(Position.of(0, 1));
+        assert changes.getJSONObject("things").getJSONArray("added").isEmpty();
+        assert changes.getJSONObject("things").getJSONArray("removed").isEmpty();
+        assert changes.getJSONObject("goalZones").getJSONArray("added").isEmpty();
+
+        var r2 = receive(delta);
+        assert r2.applyDelta(receive(p1.toWireJson()));
+        assert r2.things.equals(things2);
+        assert r2.goalZones.equals(List.of(Position.of(0, 2)));
+    }
+
+    @org.junit.Test
+    public void completePerceptIfDeltaIsNotSmaller() {
+        // the agent did not move, but everything else changed
+        var p1 = percept(1, view(Position.of(0, 0), 10), List.of(), List.of("n"), "failed_path");
+        var p2 = percept(2, view(Position.of(3, 4), 10), List.of(), List.of("n"), "failed_path");
+        var json = p2.toDeltaWireJson(p1);
+        var percept = json.getJSONObject("content").getJSONObject("percept");
+        assert !percept.has("delta");
+        assert percept.getJSONArray("things").length() == p2.things.size();
+    }
+}
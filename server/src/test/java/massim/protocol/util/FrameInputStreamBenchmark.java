@@ -0,0 +1,66 @@
+package massim.protocol.util;
+
+import org.json.JSONObject;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares the time needed to read messages from a local stand-in server directly from the socket
+ * against reading them through a {@link FrameInputStream}.
+ * <p>
+ * Run with: <code>java massim.protocol.util.FrameInputStreamBenchmark [messages] [rounds]</code>
+ */
+public class FrameInputStreamBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        var count = args.length > 0? Integer.parseInt(args[0]) : 1000;
+        var rounds = args.length > 1? Integer.parseInt(args[1]) : 5;
+
+        var messages = new ArrayList<JSONObject>();
+        for (var i = 0; i < count; i++) messages.add(FrameInputStreamTest.makeMessage(i));
+        var bytes = count * (messages.get(0).toString().length() + 1);
+
+        for (var round = 0; round < rounds; round++) { // the first rounds are warm-up
+            var direct = readFromServer(messages, in -> in);
+            var buffered = readFromServer(messages, FrameInputStream::new);
+            System.out.printf("round %d: read %d KB: directly %d ms, buffered %d ms%n",
+                    round, bytes / 1024, direct / 1_000_000, buffered / 1_000_000);
+        }
+    }
+
+    private interface StreamWrapper {
+        InputStream wrap(InputStream in);
+    }
+
+    /**
+     * @return the time needed to receive all messages (ns)
+     */
+    private static long readFromServer(List<JSONObject> messages, StreamWrapper wrapper) throws Exception {
+        try (var server = new ServerSocket(0)) {
+            var sender = new Thread(() -> {
+                try (var socket = server.accept(); var out = new BufferedOutputStream(socket.getOutputStream())) {
+                    for (var message : messages)
+                        out.write((message.toString() + "\0").getBytes(StandardCharsets.UTF_8));
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            });
+            sender.start();
+            try (var socket = new Socket("localhost", server.getLocalPort())) {
+                var in = wrapper.wrap(socket.getInputStream());
+                var start = System.nanoTime();
+                for (var i = 0; i < messages.size(); i++) WireFormat.JSON.read(in, Integer.MAX_VALUE);
+                var time = System.nanoTime() - start;
+                sender.join();
+                return time;
+            }
+        }
+    }
+}
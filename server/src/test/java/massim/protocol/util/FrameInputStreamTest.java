@@ -0,0 +1,81 @@
+package massim.protocol.util;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+public class FrameInputStreamTest {
+
+    static JSONObject makeMessage(int i) {
+        var things = new JSONArray();
+        for (var x = -5; x <= 5; x++) {
+            for (var y = -5; y <= 5; y++)
+                things.put(new JSONObject().put("x", x).put("y", y).put("type", "obstacle").put("details", ""));
+        }
+        return new JSONObject().put("type", "request-action")
+                .put("content", new JSONObject().put("id", i).put("percept", new JSONObject().put("things", things)));
+    }
+
+    @org.junit.Test
+    public void messagesSpanningChunksAreRead() throws IOException {
+        var out = new ByteArrayOutputStream();
+        WireFormat.JSON.write(out, new JSONObject().put("text", "grüße 😀"));
+        WireFormat.JSON.write(out, new JSONObject().put("big", "x".repeat(100)));
+        WireFormat.JSON.write(out, makeMessage(1));
+        var in = new FrameInputStream(new ByteArrayInputStream(out.toByteArray()), 7);
+        assert WireFormat.JSON.read(in, 1000).getString("text").equals("grüße 😀");
+        assert WireFormat.JSON.read(in, 50) == null; // skipped
+        assert WireFormat.JSON.read(in, Integer.MAX_VALUE).similar(makeMessage(1));
+        try {
+            WireFormat.JSON.read(in, 1000);
+            assert false;
+        } catch (EOFException ignored) {}
+    }
+
+    @org.junit.Test
+    public void framesAreReadInBulk() throws IOException {
+        var percept = makeMessage(1);
+        var out = new ByteArrayOutputStream();
+        for (var format : WireFormat.values()) new WireCodec(format, true).write(out, percept);
+        var in = new FrameInputStream(new ByteArrayInputStream(out.toByteArray()), 16);
+        for (var format : WireFormat.values())
+            assert new WireCodec(format, true).read(in, Integer.MAX_VALUE).similar(percept);
+    }
+
+    /**
+     * Reads messages from a local stand-in server through a {@link FrameInputStream}.
+     * (See {@link FrameInputStreamBenchmark} for the comparison with reading directly from the socket.)
+     */
+    @org.junit.Test
+    public void messagesFromLocalServerAreReadInOrder() throws Exception {
+        var messages = new ArrayList<JSONObject>();
+        for (var i = 0; i < 100; i++) messages.add(makeMessage(i));
+
+        try (var server = new ServerSocket(0)) {
+            var sender = new Thread(() -> {
+                try (var socket = server.accept(); var out = new BufferedOutputStream(socket.getOutputStream())) {
+                    for (var message : messages)
+                        out.write((message.toString() + "\0").getBytes(StandardCharsets.UTF_8));
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            });
+            sender.start();
+            try (var socket = new Socket("localhost", server.getLocalPort())) {
+                var in = new FrameInputStream(socket.getInputStream());
+                for (var message : messages)
+                    assert WireFormat.JSON.read(in, Integer.MAX_VALUE).similar(message);
+                sender.join();
+            }
+        }
+    }
+}
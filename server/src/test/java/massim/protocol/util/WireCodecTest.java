@@ -0,0 +1,81 @@
+package massim.protocol.util;
+
+import massim.protocol.data.Position;
+import massim.protocol.data.Thing;
+import massim.protocol.messages.scenario.StepPercept;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class WireCodecTest {
+
+    private static StepPercept makePercept() {
+        var things = new HashSet<Thing>();
+        for (var x = -5; x <= 5; x++) {
+            for (var y = -5; y <= 5; y++) {
+                if (Math.abs(x) + Math.abs(y) <= 5 && (x * 7 + y * 3) % 4 == 0)
+                    things.add(new Thing(x, y, Thing.TYPE_OBSTACLE, ""));
+            }
+        }
+        things.add(new Thing(0, 0, Thing.TYPE_ENTITY, "A"));
+        var percept = new StepPercept(7, 120, things, StepPercept.Shared.of(Set.of(), Set.of()),
+                "move", List.of("n"), "success", List.of(), new JSONArray(), "default",
+                100, false, new ArrayList<>(), List.of(Position.of(1, 1)), List.of(), null);
+        percept.updateIdAndDeadline(3, 1700000000000L);
+        return percept;
+    }
+
+    private static int size(WireCodec codec, JSONObject json) throws IOException {
+        var out = new ByteArrayOutputStream();
+        codec.write(out, json);
+        return out.size();
+    }
+
+    @org.junit.Test
+    public void compressedMessagesSurvive() throws IOException {
+        var percept = makePercept();
+        for (var format : WireFormat.values()) {
+            var sender = new WireCodec(format, true);
+            var receiver = new WireCodec(format, true);
+            var out = new ByteArrayOutputStream();
+            sender.write(out, percept.toWireJson());
+            sender.write(out, new JSONObject().put("type", "bye").put("content", new JSONObject()));
+            var in = new ByteArrayInputStream(out.toByteArray());
+            assert receiver.read(in, Integer.MAX_VALUE).similar(percept.toJson());
+            assert receiver.read(in, Integer.MAX_VALUE).getString("type").equals("bye");
+        }
+    }
+
+    @org.junit.Test
+    public void compressionReducesSize() throws IOException {
+        var percept = makePercept().toWireJson();
+        var plain = size(new WireCodec(WireFormat.JSON, false), percept);
+        var compressed = size(new WireCodec(WireFormat.JSON, true), percept);
+        assert compressed * 3 < plain;
+        assert size(new WireCodec(WireFormat.BINARY_V1, true), percept)
+                < size(new WireCodec(WireFormat.BINARY_V1, false), percept);
+    }
+
+    @org.junit.Test
+    public void oversizedMessagesAreSkipped() throws IOException {
+        var codec = new WireCodec(WireFormat.JSON, true);
+        var out = new ByteArrayOutputStream();
+        codec.write(out, new JSONObject().put("big", "x".repeat(10000))); // compresses well, but is too big inflated
+        codec.write(out, new JSONObject().put("small", 1));
+        var in = new ByteArrayInputStream(out.toByteArray());
+        assert codec.read(in, 100) == null;
+        assert codec.read(in, 100).getInt("small") == 1;
+        try {
+            codec.read(in, 100);
+            assert false;
+        } catch (EOFException ignored) {}
+    }
+}
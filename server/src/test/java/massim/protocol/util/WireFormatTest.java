@@ -0,0 +1,112 @@
+package massim.protocol.util;
+
+import massim.protocol.data.Position;
+import massim.protocol.data.TaskInfo;
+import massim.protocol.data.Thing;
+import massim.protocol.messages.ActionMessage;
+import massim.protocol.messages.Message;
+import massim.protocol.messages.scenario.StepPercept;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class WireFormatTest {
+
+    private static StepPercept makePercept() {
+        var things = new HashSet<Thing>();
+        for (var x = -5; x <= 5; x++) {
+            things.add(new Thing(x, 5 - Math.abs(x), Thing.TYPE_OBSTACLE, ""));
+            things.add(new Thing(x, Math.abs(x) - 5, Thing.TYPE_OBSTACLE, ""));
+        }
+        things.add(new Thing(0, 0, Thing.TYPE_ENTITY, "A"));
+        things.add(new Thing(0, 1, Thing.TYPE_BLOCK, "b1"));
+        var tasks = Set.of(new TaskInfo("task0", 120, 40, Set.of(new Thing(0, 1, "", "b1"))));
+        var percept = new StepPercept(7, 1234567890123L, things, StepPercept.Shared.of(tasks, Set.of()),
+                "move", List.of("n"), "failed_path", List.of(Position.of(0, 1)), new JSONArray(), "default",
+                100, false, new ArrayList<>(), List.of(Position.of(1, 1)), List.of(), Position.of(-3, 42));
+        percept.updateIdAndDeadline(3, 1700000000000L);
+        return percept;
+    }
+
+    private static JSONObject roundTrip(WireFormat format, JSONObject json) throws IOException {
+        var out = new ByteArrayOutputStream();
+        format.write(out, json);
+        return format.read(new ByteArrayInputStream(out.toByteArray()), Integer.MAX_VALUE);
+    }
+
+    @org.junit.Test
+    public void perceptsSurviveBothFormats() throws IOException {
+        var percept = makePercept();
+        for (var format : WireFormat.values()) {
+            var json = roundTrip(format, percept.toWireJson());
+            assert json.similar(percept.toJson());
+            var decoded = (StepPercept) Message.buildFromJson(json);
+            assert decoded.things.size() == percept.things.size();
+            assert decoded.score == percept.score;
+            assert decoded.getDeadline() == percept.getDeadline();
+        }
+    }
+
+    @org.junit.Test
+    public void binaryIsSmaller() throws IOException {
+        var json = makePercept().toWireJson();
+        var jsonBytes = new ByteArrayOutputStream();
+        WireFormat.JSON.write(jsonBytes, json);
+        var binaryBytes = new ByteArrayOutputStream();
+        WireFormat.BINARY_V1.write(binaryBytes, json);
+        assert binaryBytes.size() * 2 < jsonBytes.size();
+    }
+
+    @org.junit.Test
+    public void valuesSurviveBinary() throws IOException {
+        var json = new JSONObject()
+                .put("int", -1)
+                .put("long", Long.MIN_VALUE)
+                .put("double", -0.25)
+                .put("bool", true)
+                .put("null", JSONObject.NULL)
+                .put("text", "äöü € \0 new")
+                .put("again", "äöü € \0 new")
+                .put("array", new JSONArray().put(new JSONObject()).put(new JSONArray()).put("new"));
+        var decoded = roundTrip(WireFormat.BINARY_V1, json);
+        assert decoded.similar(json);
+        assert decoded.getLong("long") == Long.MIN_VALUE;
+        assert decoded.isNull("null");
+
+        var action = new ActionMessage("move", 42, List.of("w"));
+        var decodedAction = (ActionMessage) Message.buildFromJson(roundTrip(WireFormat.BINARY_V1, action.toJson()));
+        assert decodedAction.getId() == 42 && decodedAction.getParams().equals(List.of("w"));
+    }
+
+    @org.junit.Test
+    public void oversizedMessagesAreSkipped() throws IOException {
+        for (var format : WireFormat.values()) {
+            var out = new ByteArrayOutputStream();
+            format.write(out, new JSONObject().put("big", "x".repeat(1000)));
+            format.write(out, new JSONObject().put("small", 1));
+            var in = new ByteArrayInputStream(out.toByteArray());
+            assert format.read(in, 100) == null;
+            assert format.read(in, 100).getInt("small") == 1;
+            try {
+                format.read(in, 100);
+                assert false;
+            } catch (EOFException ignored) {}
+        }
+    }
+
+    @org.junit.Test
+    public void formatsAreNegotiatedByName() {
+        assert WireFormat.fromName("binary-v1") == WireFormat.BINARY_V1;
+        assert WireFormat.fromName("json") == WireFormat.JSON;
+        assert WireFormat.fromName("xml") == null;
+        assert WireFormat.fromName(null) == null;
+    }
+}